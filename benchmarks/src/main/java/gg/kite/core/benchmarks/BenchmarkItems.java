@@ -0,0 +1,46 @@
+package gg.kite.core.benchmarks;
+
+import gg.kite.core.utils.ItemUtils;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared fixtures: a mocked server so item APIs work without a running Minecraft server, and a
+ * representative listing item with a name, lore and enchantments.
+ */
+final class BenchmarkItems {
+
+    private BenchmarkItems() {
+    }
+
+    static void startServer() {
+        MockBukkit.mock();
+        ItemUtils.initialize(MockBukkit.createMockPlugin());
+    }
+
+    static void stopServer() {
+        MockBukkit.unmock();
+    }
+
+    static ItemStack enchantedSword() {
+        ItemStack item = new ItemStack(Material.DIAMOND_SWORD);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName("§bBlade of the Marketplace");
+        List<String> lore = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lore.add("§7Forged in batch " + i);
+        }
+        meta.setLore(lore);
+        meta.addEnchant(Enchantment.SHARPNESS, 5, true);
+        meta.addEnchant(Enchantment.UNBREAKING, 3, true);
+        meta.addEnchant(Enchantment.LOOTING, 3, true);
+        item.setItemMeta(meta);
+        return item;
+    }
+}
\ No newline at end of file
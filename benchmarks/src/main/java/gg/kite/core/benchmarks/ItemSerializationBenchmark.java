@@ -0,0 +1,75 @@
+package gg.kite.core.benchmarks;
+
+import gg.kite.core.utils.ItemCache;
+import gg.kite.core.utils.ItemUtils;
+import org.bson.types.Binary;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legacy Base64 object-stream format against the compact binary format, plus the cost of a
+ * cached lookup for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemSerializationBenchmark {
+    private ItemStack item;
+    private String legacy;
+    private Binary compact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkItems.startServer();
+        item = BenchmarkItems.enchantedSword();
+        legacy = ItemUtils.serializeLegacyItem(item);
+        compact = ItemUtils.serializeItem(item);
+        ItemCache.get(compact);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkItems.stopServer();
+    }
+
+    @Benchmark
+    public String serializeLegacy() {
+        return ItemUtils.serializeLegacyItem(item);
+    }
+
+    @Benchmark
+    public Binary serializeCompact() {
+        return ItemUtils.serializeItem(item);
+    }
+
+    @Benchmark
+    public ItemStack deserializeLegacy() {
+        return ItemUtils.deserializeItem(legacy);
+    }
+
+    @Benchmark
+    public ItemStack deserializeCompact() {
+        return ItemUtils.deserializeItem(compact);
+    }
+
+    @Benchmark
+    public ItemStack cachedLookup() {
+        return ItemCache.get(compact);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package gg.kite.core.benchmarks;
+
+import gg.kite.core.gui.MarketplaceGUI;
+import gg.kite.core.utils.ItemCache;
+import gg.kite.core.utils.ItemUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning one full page of listings into GUI icons, with a cold and a warm item cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingRenderBenchmark {
+    private static final int PAGE_SIZE = 45;
+
+    private final List<Document> page = new ArrayList<>(PAGE_SIZE);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkItems.startServer();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            ItemStack item = BenchmarkItems.enchantedSword();
+            item.setAmount(1 + i % 64);
+            page.add(new Document("_id", new ObjectId())
+                    .append("seller", UUID.randomUUID().toString())
+                    .append("item", ItemUtils.serializeItem(item))
+                    .append("price", 100.0 + i)
+                    .append("listedAt", now)
+                    .append("expiresAt", now + TimeUnit.DAYS.toMillis(7)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkItems.stopServer();
+    }
+
+    @Benchmark
+    public List<ItemStack> renderPageColdCache() {
+        ItemCache.clear();
+        return renderPage();
+    }
+
+    @Benchmark
+    public List<ItemStack> renderPageWarmCache() {
+        return renderPage();
+    }
+
+    private List<ItemStack> renderPage() {
+        List<ItemStack> icons = new ArrayList<>(PAGE_SIZE);
+        for (Document listing : page) {
+            icons.add(MarketplaceGUI.renderListing(listing, false));
+        }
+        return icons;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package gg.kite.core.benchmarks;
+
+import gg.kite.core.database.PlayerData;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Document mapping for player records and trade history pages. Pure BSON, no server needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerDataBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private PlayerData playerData;
+    private Document playerDocument;
+    private List<PlayerData.Transaction> history;
+    private List<Document> historyDocuments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        UUID playerId = UUID.randomUUID();
+
+        List<String> listings = new ArrayList<>(size);
+        history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            listings.add(new ObjectId().toString());
+
+            byte[] item = new byte[256];
+            random.nextBytes(item);
+            history.add(new PlayerData.Transaction(playerId, UUID.randomUUID(), new Binary(item), "STONE",
+                    random.nextDouble() * 1000, random.nextBoolean(), System.currentTimeMillis() - i));
+        }
+
+        playerData = new PlayerData(playerId, listings);
+        playerDocument = playerData.toDocument();
+        historyDocuments = transactionsToDocuments();
+    }
+
+    @Benchmark
+    public Document playerDataToDocument() {
+        return playerData.toDocument();
+    }
+
+    @Benchmark
+    public PlayerData playerDataFromDocument() {
+        return PlayerData.fromDocument(playerDocument);
+    }
+
+    @Benchmark
+    public List<Document> transactionsToDocuments() {
+        List<Document> documents = new ArrayList<>(history.size());
+        for (PlayerData.Transaction transaction : history) {
+            documents.add(transaction.toDocument());
+        }
+        return documents;
+    }
+
+    @Benchmark
+    public List<PlayerData.Transaction> transactionsFromDocuments() {
+        List<PlayerData.Transaction> transactions = new ArrayList<>(historyDocuments.size());
+        for (Document document : historyDocuments) {
+            transactions.add(PlayerData.Transaction.fromDocument(document));
+        }
+        return transactions;
+    }
+}
\ No newline at end of file
@@ -1,25 +1,37 @@
 package gg.kite.core;
 
 import gg.kite.core.commands.*;
+import gg.kite.core.database.ListingExpiryScheduler;
+import gg.kite.core.database.MongoExecutors;
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.gui.MarketplaceGUI;
 import gg.kite.core.listeners.InventoryListener;
+import gg.kite.core.listeners.PlayerListener;
 import gg.kite.core.utils.ConfigManager;
 import gg.kite.core.utils.DiscordWebhook;
+import gg.kite.core.utils.InstrumentedExecutor;
+import gg.kite.core.utils.ItemCache;
 import gg.kite.core.utils.ItemUtils;
+import gg.kite.core.utils.Metrics;
+import gg.kite.core.utils.MetricsServer;
+import gg.kite.core.utils.PlayerNameCache;
+import gg.kite.core.utils.WebhookDispatcher;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class Main extends JavaPlugin {
     private MongoManager mongoManager;
     private ConfigManager configManager;
     private MarketplaceGUI marketplaceGUI;
     private Economy economy;
+    private MetricsServer metricsServer;
 
     @Override
     public void onEnable() {
@@ -42,17 +54,54 @@ public class Main extends JavaPlugin {
 
         configManager = new ConfigManager(this);
         configManager.loadConfig();
+        ItemCache.initialize(configManager.getItemCacheSize());
 
         try {
-            mongoManager = new MongoManager(configManager.getMongoConnectionString());
+            MongoExecutors executors = new MongoExecutors(configManager.useVirtualThreads(),
+                    configManager.getDatabaseReadThreads(), configManager.getDatabaseWriteThreads());
+            mongoManager = new MongoManager(configManager.getMongoConnectionString(), executors);
             mongoManager.connect();
             getLogger().info("Successfully connected to MongoDB.");
+
+            mongoManager.openPurchaseJournal(getDataFolder().toPath().resolve("purchases.journal"), getLogger());
+
+            mongoManager.buildSearchIndex().exceptionally(ex -> {
+                getLogger().warning("Failed to build the search index: " + ex.getMessage());
+                return null;
+            });
+
+            mongoManager.migrateEmbeddedTransactions().thenAccept(migrated -> {
+                if (migrated > 0) {
+                    getLogger().info("Moved embedded trade history of " + migrated + " player(s) to the transactions collection");
+                }
+            }).exceptionally(ex -> {
+                getLogger().warning("Trade history migration failed: " + ex.getMessage());
+                return null;
+            });
+
+            mongoManager.migrateItemFormat().thenAccept(results -> results.stream()
+                    .filter(result -> result.getMigrated() > 0 || result.getFailed() > 0)
+                    .forEach(result -> getLogger().info("Item format migration " + result.describe())))
+                    .exceptionally(ex -> {
+                        getLogger().warning("Item format migration failed: " + ex.getMessage());
+                        return null;
+                    });
+
+            mongoManager.validateListings(Bukkit.getBukkitVersion(), getLogger())
+                    .thenAccept(result -> getLogger().info("Listing validation " + result.describe()))
+                    .exceptionally(ex -> {
+                        getLogger().warning("Listing validation failed: " + ex.getMessage());
+                        return null;
+                    });
         } catch (Exception e) {
             getLogger().severe("Failed to connect to MongoDB: " + e.getMessage());
             getServer().getPluginManager().disablePlugin(this);
             return;
         }
 
+        PlayerNameCache.initialize(mongoManager::resolvePlayerName);
+        Bukkit.getOnlinePlayers().forEach(player -> PlayerNameCache.put(player.getUniqueId(), player.getName()));
+
         marketplaceGUI = new MarketplaceGUI(this, mongoManager, economy);
 
         MarketplaceCommand marketplaceCommand = new MarketplaceCommand(this, marketplaceGUI, mongoManager, configManager, economy);
@@ -60,13 +109,33 @@ public class Main extends JavaPlugin {
         Objects.requireNonNull(getCommand("marketplace")).setTabCompleter(marketplaceCommand);
 
         getServer().getPluginManager().registerEvents(new InventoryListener(marketplaceGUI), this);
+        getServer().getPluginManager().registerEvents(new PlayerListener(this, mongoManager), this);
+
+        registerMetrics();
+        if (configManager.isMetricsHttpEnabled()) {
+            try {
+                metricsServer = new MetricsServer(configManager.getMetricsHost(), configManager.getMetricsPort());
+                metricsServer.start();
+                getLogger().info("Serving metrics on " + configManager.getMetricsHost() + ":" + configManager.getMetricsPort() + "/metrics");
+            } catch (IOException e) {
+                getLogger().warning("Failed to start the metrics endpoint: " + e.getMessage());
+            }
+        }
 
         new BukkitRunnable() {
             @Override
             public void run() {
-                mongoManager.cleanupExpiredListings();
+                mongoManager.rotateBlackMarket(configManager.getBlackMarketSize());
             }
-        }.runTaskTimerAsynchronously(this, 0L, 20 * 60 * 60); // Run hourly
+        }.runTaskTimerAsynchronously(this, 0L, 20L * 60 * configManager.getBlackMarketRotationMinutes());
+
+        ListingExpiryScheduler expiryScheduler = new ListingExpiryScheduler(mongoManager, getLogger());
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                expiryScheduler.tick();
+            }
+        }.runTaskTimerAsynchronously(this, 20L, 20L); // Check deadlines every second
     }
 
     @Override
@@ -80,6 +149,15 @@ public class Main extends JavaPlugin {
             });
         }
 
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+        Metrics.clear();
+        PlayerNameCache.clear();
+
+        DiscordWebhook.shutdown(5, TimeUnit.SECONDS);
+
         if (mongoManager != null) {
             try {
                 mongoManager.disconnect();
@@ -108,4 +186,39 @@ public class Main extends JavaPlugin {
     public Economy getEconomy() {
         return economy;
     }
+
+    /**
+     * Exposes the counters components already keep; latency histograms register themselves on
+     * first use.
+     */
+    private void registerMetrics() {
+        for (InstrumentedExecutor executor : mongoManager.getExecutors().all()) {
+            String name = executor.getName();
+            Metrics.gauge("marketplace_executor_queue_depth", "Tasks waiting for a thread, by executor.", "executor", name, executor::getQueueDepth);
+            Metrics.gauge("marketplace_executor_active", "Tasks running, by executor.", "executor", name, executor::getActiveCount);
+            Metrics.counter("marketplace_executor_completed_total", "Tasks finished, by executor.", "executor", name, executor::getCompletedCount);
+            Metrics.counter("marketplace_executor_failed_total", "Tasks that threw, by executor.", "executor", name, executor::getFailedCount);
+        }
+
+        Metrics.counter("marketplace_cache_hits_total", "Lookups served from memory, by cache.", "cache", "item", ItemCache::getHitCount);
+        Metrics.counter("marketplace_cache_misses_total", "Lookups that had to build the value, by cache.", "cache", "item", ItemCache::getMissCount);
+        Metrics.gauge("marketplace_cache_entries", "Entries held, by cache.", "cache", "item", ItemCache::size);
+        Metrics.counter("marketplace_cache_hits_total", "Lookups served from memory, by cache.", "cache", "page", marketplaceGUI.getPageCache()::getHitCount);
+        Metrics.counter("marketplace_cache_misses_total", "Lookups that had to build the value, by cache.", "cache", "page", marketplaceGUI.getPageCache()::getMissCount);
+        Metrics.gauge("marketplace_cache_entries", "Entries held, by cache.", "cache", "page", marketplaceGUI.getPageCache()::size);
+        Metrics.gauge("marketplace_cache_entries", "Entries held, by cache.", "cache", "player_name", PlayerNameCache::size);
+
+        Metrics.gauge("marketplace_webhook_queue_depth", "Webhook messages waiting to be sent.", () -> {
+            WebhookDispatcher dispatcher = DiscordWebhook.getDispatcher();
+            return dispatcher != null ? dispatcher.getQueueDepth() : 0;
+        });
+        Metrics.counter("marketplace_webhook_sent_total", "Webhook requests delivered.", () -> {
+            WebhookDispatcher dispatcher = DiscordWebhook.getDispatcher();
+            return dispatcher != null ? dispatcher.getSentCount() : 0;
+        });
+        Metrics.counter("marketplace_webhook_dropped_total", "Webhook messages dropped because the queue was full.", () -> {
+            WebhookDispatcher dispatcher = DiscordWebhook.getDispatcher();
+            return dispatcher != null ? dispatcher.getDroppedCount() : 0;
+        });
+    }
 }
\ No newline at end of file
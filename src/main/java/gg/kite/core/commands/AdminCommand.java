@@ -2,9 +2,16 @@ package gg.kite.core.commands;
 
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.database.PlayerData;
+import gg.kite.core.database.TransactionRole;
 import gg.kite.core.gui.MarketplaceGUI;
-import gg.kite.core.utils.ItemUtils;
-import org.bson.Document;
+import gg.kite.core.gui.PageCache;
+import gg.kite.core.utils.DiscordWebhook;
+import gg.kite.core.utils.Histogram;
+import gg.kite.core.utils.InstrumentedExecutor;
+import gg.kite.core.utils.ItemCache;
+import gg.kite.core.utils.Metrics;
+import gg.kite.core.utils.PlayerNameCache;
+import gg.kite.core.utils.WebhookDispatcher;
 import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
@@ -12,7 +19,6 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
 
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -23,11 +29,14 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
     private final MongoManager mongoManager;
     private final MarketplaceGUI marketplaceGUI;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    private static final List<String> SUBCOMMANDS = Arrays.asList("remove", "transactions");
+    private static final List<String> SUBCOMMANDS = Arrays.asList("remove", "transactions", "stats");
+    private static final int TRANSACTIONS_PER_PAGE = 10;
+    private final TransactionPager pager;
 
     public AdminCommand(MongoManager mongoManager, MarketplaceGUI marketplaceGUI) {
         this.mongoManager = mongoManager;
         this.marketplaceGUI = marketplaceGUI;
+        this.pager = new TransactionPager(mongoManager, TRANSACTIONS_PER_PAGE);
     }
 
     @Override
@@ -38,7 +47,7 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < 2 || !args[0].equalsIgnoreCase("admin")) {
-            sender.sendMessage("Usage: /marketplace admin <remove|transactions> <args>");
+            sender.sendMessage("Usage: /marketplace admin <remove|transactions|stats> <args>");
             return true;
         }
 
@@ -59,10 +68,7 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
             }
 
             mongoManager.removeListing(listingId)
-                    .thenRun(() -> {
-                        sender.sendMessage("Listing " + listingId + " removed successfully!");
-                        marketplaceGUI.refreshInventories();
-                    })
+                    .thenRun(() -> sender.sendMessage("Listing " + listingId + " removed successfully!"))
                     .exceptionally(ex -> {
                         sender.sendMessage("Error removing listing: " + ex.getMessage());
                         return null;
@@ -72,8 +78,8 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
         }
 
         if (subcommand.equals("transactions")) {
-            if (args.length != 3) {
-                sender.sendMessage("Usage: /marketplace admin transactions <player>");
+            if (args.length != 3 && args.length != 4) {
+                sender.sendMessage("Usage: /marketplace admin transactions <player> [page]");
                 return true;
             }
 
@@ -85,31 +91,49 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
                 return true;
             }
 
-            mongoManager.getPlayerData(playerId).thenAccept(playerData -> {
-                List<PlayerData.Transaction> transactions = playerData.getTransactions();
-                if (transactions.isEmpty()) {
-                    sender.sendMessage("No transaction history for " + args[2]);
-                    return;
+            int page = 1;
+            if (args.length == 4) {
+                try {
+                    page = Integer.parseInt(args[3]);
+                    if (page < 1) throw new NumberFormatException();
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("Please enter a valid page number!");
+                    return true;
                 }
+            }
 
-                sender.sendMessage("§6=== Transaction History for " + args[2] + " ===");
-                for (PlayerData.Transaction transaction : transactions) {
-                    String role = transaction.getBuyer().equals(playerId) ? "Bought" : "Sold";
-                    String otherParty = transaction.getBuyer().equals(playerId) ? transaction.getSeller().toString() : transaction.getBuyer().toString();
-                    String otherName = Bukkit.getOfflinePlayer(UUID.fromString(otherParty)).getName();
-                    String formattedDate = dateFormat.format(new Date(transaction.getTimestamp()));
-
-                    sender.sendMessage(String.format(
-                            "§e%s: %s %s for $%.2f from/to %s%s",
-                            formattedDate,
-                            role,
-                            transaction.getItem().getType().name(),
-                            transaction.getPrice(),
-                            otherName != null ? otherName : "Unknown",
-                            transaction.isBlackMarket() ? " (Black Market)" : ""
-                    ));
+            int finalPage = page;
+            mongoManager.countTransactions(playerId, TransactionRole.ANY).thenCompose(total -> {
+                if (total == 0) {
+                    sender.sendMessage("No transaction history for " + args[2]);
+                    return CompletableFuture.<Void>completedFuture(null);
                 }
-                sender.sendMessage("§6=====================");
+
+                int totalPages = (int) Math.ceil((double) total / TRANSACTIONS_PER_PAGE);
+                return pager.getPage(sender.getName(), playerId, TransactionRole.ANY, finalPage)
+                        .thenCompose(transactions -> PlayerNameCache.resolve(transactions.stream()
+                                .map(transaction -> transaction.getBuyer().equals(playerId) ? transaction.getSeller() : transaction.getBuyer())
+                                .toList()).thenApply(v -> transactions))
+                        .thenAccept(transactions -> {
+                            sender.sendMessage("§6=== Transaction History for " + args[2] + " (Page " + finalPage + "/" + totalPages + ") ===");
+                            for (PlayerData.Transaction transaction : transactions) {
+                                String role = transaction.getBuyer().equals(playerId) ? "Bought" : "Sold";
+                                String otherParty = transaction.getBuyer().equals(playerId) ? transaction.getSeller().toString() : transaction.getBuyer().toString();
+                                String otherName = PlayerNameCache.get(UUID.fromString(otherParty));
+                                String formattedDate = dateFormat.format(new Date(transaction.getTimestamp()));
+
+                                sender.sendMessage(String.format(
+                                        "§e%s: %s %s for $%.2f from/to %s%s",
+                                        formattedDate,
+                                        role,
+                                        transaction.getItemName(),
+                                        transaction.getPrice(),
+                                        otherName,
+                                        transaction.isBlackMarket() ? " (Black Market)" : ""
+                                ));
+                            }
+                            sender.sendMessage("§6=====================");
+                        });
             }).exceptionally(ex -> {
                 sender.sendMessage("Error fetching transaction history: " + ex.getMessage());
                 return null;
@@ -118,10 +142,60 @@ public class AdminCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        sender.sendMessage("Unknown subcommand! Use: remove, transactions");
+        if (subcommand.equals("stats")) {
+            sender.sendMessage("§6=== Marketplace Stats ===");
+            for (InstrumentedExecutor executor : mongoManager.getExecutors().all()) {
+                sender.sendMessage(String.format("§e%s (%s, max %d): queued %d, active %d, completed %d, failed %d",
+                        executor.getName(),
+                        executor.isVirtual() ? "virtual" : "platform",
+                        executor.getMaxConcurrency(),
+                        executor.getQueueDepth(),
+                        executor.getActiveCount(),
+                        executor.getCompletedCount(),
+                        executor.getFailedCount()));
+            }
+            sender.sendMessage(String.format("§eItem cache: %d entries, %.1f%% hit rate (%d hits, %d misses)",
+                    ItemCache.size(), hitRate(ItemCache.getHitCount(), ItemCache.getMissCount()),
+                    ItemCache.getHitCount(), ItemCache.getMissCount()));
+            PageCache pageCache = marketplaceGUI.getPageCache();
+            sender.sendMessage(String.format("§ePage cache: %d pages, %.1f%% hit rate (%d hits, %d misses)",
+                    pageCache.size(), hitRate(pageCache.getHitCount(), pageCache.getMissCount()),
+                    pageCache.getHitCount(), pageCache.getMissCount()));
+            WebhookDispatcher dispatcher = DiscordWebhook.getDispatcher();
+            if (dispatcher != null) {
+                sender.sendMessage(String.format("§eWebhooks: %d queued, %d sent, %d dropped",
+                        dispatcher.getQueueDepth(), dispatcher.getSentCount(), dispatcher.getDroppedCount()));
+            }
+            sendLatencies(sender, "MongoDB operations", MongoManager.OPERATION_LATENCY);
+            sendLatencies(sender, "Main thread", Metrics.MAIN_THREAD_TIME);
+            sendLatencies(sender, "GUI rendering", MarketplaceGUI.RENDER_TIME);
+            sender.sendMessage("§6=====================");
+            return true;
+        }
+
+        sender.sendMessage("Unknown subcommand! Use: remove, transactions, stats");
         return true;
     }
 
+    private void sendLatencies(CommandSender sender, String title, String metric) {
+        Map<String, Histogram> histograms = Metrics.histograms(metric);
+        if (histograms.isEmpty()) {
+            return;
+        }
+        sender.sendMessage("§6" + title + ":");
+        histograms.forEach((label, histogram) -> {
+            double p99 = histogram.getQuantileBoundMillis(0.99);
+            sender.sendMessage(String.format("§7  %s: %d calls, avg %.2f ms, p99 %s",
+                    label, histogram.getCount(), histogram.getMeanMillis(),
+                    Double.isInfinite(p99) ? "> 10 s" : String.format("<= %.1f ms", p99)));
+        });
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : 100.0 * hits / total;
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (!sender.hasPermission("marketplace.admin")) {
@@ -29,7 +29,7 @@ public class BlackMarketCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        marketplaceGUI.openMarketplace(player, true, 1);
+        marketplaceGUI.openMarketplace(player, true);
         return true;
     }
 
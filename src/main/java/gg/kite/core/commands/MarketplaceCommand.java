@@ -4,10 +4,12 @@ import gg.kite.core.Main;
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.gui.MarketplaceGUI;
 import gg.kite.core.utils.ConfigManager;
-import gg.kite.core.utils.ItemUtils;
+import gg.kite.core.utils.ItemCache;
+import gg.kite.core.utils.PlayerNameCache;
 import net.milkbowl.vault.economy.Economy;
 import org.bson.Document;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -21,6 +23,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MarketplaceCommand implements CommandExecutor, TabCompleter {
     private final Main plugin;
@@ -29,8 +32,9 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
     private final ConfigManager configManager;
     private final Economy economy;
     private final AdminCommand adminCommand;
+    private final SellPipeline sellPipeline;
     private static final List<String> SUBCOMMANDS = Arrays.asList("gui", "sell", "blackmarket",
-            "transactions", "list", "admin");
+            "transactions", "list", "search", "admin");
 
     public MarketplaceCommand(Main plugin, MarketplaceGUI marketplaceGUI, MongoManager mongoManager,
                               ConfigManager configManager, Economy economy) {
@@ -40,6 +44,7 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
         this.configManager = configManager;
         this.economy = economy;
         this.adminCommand = new AdminCommand(mongoManager, marketplaceGUI);
+        this.sellPipeline = new SellPipeline(plugin, mongoManager, economy);
     }
 
     @Override
@@ -56,7 +61,7 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
 
         // SUBCOMMANDS FOR MARKETPLACE..
         if (args.length == 0 || (args.length == 1 && args[0].equalsIgnoreCase("gui"))) {
-            marketplaceGUI.openMarketplace(player, false, 1);
+            marketplaceGUI.openMarketplace(player, false);
             return true;
         }
 
@@ -70,14 +75,15 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
                         return true;
                     }
 
-                    if (args.length != 2) {
-                        player.sendMessage("§cUsage: /marketplace sell <price>");
+                    boolean sellAll = args.length == 3 && args[1].equalsIgnoreCase("all");
+                    if (args.length != 2 && !sellAll) {
+                        player.sendMessage("§cUsage: /marketplace sell [all] <price>");
                         return true;
                     }
 
                     double price;
                     try {
-                        price = Double.parseDouble(args[1]);
+                        price = Double.parseDouble(args[sellAll ? 2 : 1]);
                         if (price <= 0) {
                             player.sendMessage("§cPrice must be greater than 0!");
                             return true;
@@ -93,25 +99,57 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
                         return true;
                     }
 
+                    int maxListings = configManager.getMaxListingsPerPlayer();
                     double listingFee = price * 0.10;
+
+                    if (sellAll) {
+                        // Every stack matching the held item, one listing each, capped by the listing limit
+                        int stacks = mongoManager.reserveListingSlots(player.getUniqueId(),
+                                sellPipeline.countSimilarStacks(player, maxListings), maxListings);
+                        if (stacks == 0) {
+                            player.sendMessage("§cYou have reached the maximum number of listings (" + maxListings + ")!");
+                            return true;
+                        }
+                        if (!economy.has(player, listingFee * stacks)) {
+                            mongoManager.releaseListingSlots(player.getUniqueId(), stacks);
+                            player.sendMessage("§cYou don't have enough money to pay the listing fees ($" + String.format("%.2f", listingFee * stacks) + ")!");
+                            return true;
+                        }
+
+                        sellPipeline.sellSimilarItems(player, price, listingFee, stacks).thenAccept(listed -> {
+                            if (listed > 0) {
+                                player.sendMessage("§aListed " + listed + " item(s) for $" + String.format("%.2f", price) + " each (Listing fees: $" + String.format("%.2f", listingFee * listed) + ")");
+                            }
+                        });
+                        return true;
+                    }
+
                     if (!economy.has(player, listingFee)) {
                         player.sendMessage("§cYou don't have enough money to pay the listing fee ($" + String.format("%.2f", listingFee) + ")!");
                         return true;
                     }
+                    if (mongoManager.reserveListingSlots(player.getUniqueId(), 1, maxListings) == 0) {
+                        player.sendMessage("§cYou have reached the maximum number of listings (" + maxListings + ")!");
+                        return true;
+                    }
 
-                    economy.withdrawPlayer(player, listingFee);
-                    ItemStack itemToSell = item.clone();
-                    item.setAmount(0);
-                    mongoManager.addListing(player.getUniqueId(), itemToSell, price);
-                    player.sendMessage("§aItem listed for $" + String.format("%.2f", price) + " (Listing fee: $" + String.format("%.2f", listingFee) + ")");
+                    sellPipeline.sellHeldItem(player, price, listingFee).thenAccept(listed -> {
+                        if (listed) {
+                            player.sendMessage("§aItem listed for $" + String.format("%.2f", price) + " (Listing fee: $" + String.format("%.2f", listingFee) + ")");
+                        }
+                    });
                     return true;
 
                 case "blackmarket":
-                    marketplaceGUI.openMarketplace(player, true, 1);
+                    marketplaceGUI.openMarketplace(player, true);
                     return true;
 
                 case "transactions":
-                    CompletableFuture<List<Document>> transactionsFuture = mongoManager.getTransactions(player.getUniqueId());
+                    CompletableFuture<List<Document>> transactionsFuture = mongoManager.getTransactions(player.getUniqueId())
+                            .thenCompose(transactions -> PlayerNameCache.resolve(transactions.stream()
+                                    .flatMap(transaction -> Stream.of(transaction.getString("buyer"), transaction.getString("seller")))
+                                    .map(UUID::fromString)
+                                    .collect(Collectors.toSet())).thenApply(v -> transactions));
                     transactionsFuture.thenAccept(transactions -> {
                         Bukkit.getScheduler().runTask(plugin, () -> {
                             if (transactions.isEmpty()) {
@@ -128,8 +166,8 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
                                 boolean isBlackMarket = transaction.getBoolean("isBlackMarket", false);
 
                                 player.sendMessage(String.format("§7Buyer: %s, Seller: %s, Item: %s, Price: $%.2f%s",
-                                        Bukkit.getOfflinePlayer(buyer).getName(),
-                                        Bukkit.getOfflinePlayer(seller).getName(),
+                                        PlayerNameCache.get(buyer),
+                                        PlayerNameCache.get(seller),
                                         itemName,
                                         price1,
                                         isBlackMarket ? " (Black Market)" : ""));
@@ -156,8 +194,7 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
                             for (Document listing : listings) {
                                 String listingId = listing.get("_id").toString();
                                 String shortId = listingId.length() > 8 ? listingId.substring(listingId.length() - 8) : listingId;
-                                String itemSerialized = listing.getString("item");
-                                ItemStack itemStack = ItemUtils.deserializeItem(itemSerialized);
+                                ItemStack itemStack = ItemCache.get(listing.get("item"));
                                 String itemName = itemStack != null ? (itemStack.hasItemMeta()
                                         && itemStack.getItemMeta().hasDisplayName() ? itemStack.getItemMeta().getDisplayName()
                                         : itemStack.getType().name()) : "Unknown Item";
@@ -176,16 +213,43 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
                     });
                     return true;
 
+                case "search":
+                    if (args.length < 2 || args.length > 4) {
+                        player.sendMessage("§cUsage: /marketplace search <text|material> [min] [max]");
+                        return true;
+                    }
+
+                    double minPrice = 0;
+                    double maxPrice = Double.MAX_VALUE;
+                    try {
+                        if (args.length >= 3) {
+                            minPrice = Double.parseDouble(args[2]);
+                        }
+                        if (args.length == 4) {
+                            maxPrice = Double.parseDouble(args[3]);
+                        }
+                    } catch (NumberFormatException e) {
+                        player.sendMessage("§cInvalid price format!");
+                        return true;
+                    }
+                    if (minPrice < 0 || maxPrice < minPrice) {
+                        player.sendMessage("§cInvalid price range!");
+                        return true;
+                    }
+
+                    marketplaceGUI.openSearch(player, args[1], minPrice, maxPrice);
+                    return true;
+
                 case "admin":
                     if (!player.hasPermission("marketplace.admin")) {
                         player.sendMessage("You don't have permission to use admin commands!");
                         return true;
                     }
-                    return adminCommand.onCommand(sender, command, label, Arrays.copyOfRange(args, 1, args.length));
+                    return adminCommand.onCommand(sender, command, label, args);
             }
         }
 
-        player.sendMessage("§cUsage: /marketplace [gui|sell|blackmarket|transactions|list|admin]");
+        player.sendMessage("§cUsage: /marketplace [gui|sell|blackmarket|transactions|list|search|admin]");
         return true;
     }
 
@@ -210,11 +274,34 @@ public class MarketplaceCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length >= 2 && args[0].equalsIgnoreCase("admin") && sender.hasPermission("marketplace.admin")) {
-            return adminCommand.onTabComplete(sender, command, alias, Arrays.copyOfRange(args, 1, args.length));
+            return adminCommand.onTabComplete(sender, command, alias, args);
         }
 
-        if (args.length == 2 && args[0].equalsIgnoreCase("sell") && sender.hasPermission("marketplace.sell")) {
-            return Arrays.asList("<price>");
+        if (args[0].equalsIgnoreCase("sell") && sender.hasPermission("marketplace.sell")) {
+            if (args.length == 2) {
+                return Arrays.asList("<price>", "all");
+            }
+            if (args.length == 3 && args[1].equalsIgnoreCase("all")) {
+                return Arrays.asList("<price-each>");
+            }
+        }
+
+        if (args[0].equalsIgnoreCase("search")) {
+            if (args.length == 2) {
+                String input = args[1].toUpperCase();
+                return Arrays.stream(Material.values())
+                        .map(Material::name)
+                        .filter(name -> name.startsWith(input))
+                        .map(String::toLowerCase)
+                        .limit(20)
+                        .collect(Collectors.toList());
+            }
+            if (args.length == 3) {
+                return Arrays.asList("<min>");
+            }
+            if (args.length == 4) {
+                return Arrays.asList("<max>");
+            }
         }
 
         return new ArrayList<>();
@@ -3,7 +3,7 @@ package gg.kite.core.commands;
 import gg.kite.core.Main;
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.utils.ConfigManager;
-import gg.kite.core.utils.ItemUtils;
+import net.milkbowl.vault.economy.Economy;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -20,12 +20,14 @@ public class SellCommand implements CommandExecutor, TabCompleter {
     private final Main plugin;
     private final MongoManager mongoManager;
     private final ConfigManager configManager;
+    private final SellPipeline sellPipeline;
     private static final List<String> PRICE_SUGGESTIONS = Arrays.asList("10", "50", "100", "500", "1000");
 
-    public SellCommand(Main plugin, MongoManager mongoManager, ConfigManager configManager) {
+    public SellCommand(Main plugin, MongoManager mongoManager, ConfigManager configManager, Economy economy) {
         this.plugin = plugin;
         this.mongoManager = mongoManager;
         this.configManager = configManager;
+        this.sellPipeline = new SellPipeline(plugin, mongoManager, economy);
     }
 
     @Override
@@ -60,35 +62,19 @@ public class SellCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        // Validate item serialization
-        String serialized = ItemUtils.serializeItem(item);
-        if (serialized.isEmpty()) {
-            player.sendMessage("This item cannot be listed due to an internal error!");
-            return true;
-        }
-        ItemStack deserialized = ItemUtils.deserializeItem(serialized);
-        if (deserialized == null) {
-            player.sendMessage("This item cannot be listed due to an internal error!");
-            return true;
-        }
-
-        // Check listing limit
+        // Take a listing slot; listings still being stored count towards the limit
         int maxListings = configManager.getMaxListingsPerPlayer();
-        if (mongoManager.getPlayerListingCount(player.getUniqueId()) >= maxListings) {
+        if (mongoManager.reserveListingSlots(player.getUniqueId(), 1, maxListings) == 0) {
             player.sendMessage("You have reached the maximum number of listings (" + maxListings + ")!");
             return true;
         }
 
-        ItemStack itemClone = item.clone();
-        player.getInventory().setItemInMainHand(null);
-
-        mongoManager.addListing(player.getUniqueId(), itemClone, price)
-                .thenRun(() -> player.sendMessage("Item listed for $" + price))
-                .exceptionally(ex -> {
-                    player.getInventory().addItem(itemClone);
-                    player.sendMessage("Error listing item: " + ex.getMessage());
-                    return null;
-                });
+        // Serialization and validation happen on a worker; the item is held in escrow meanwhile
+        sellPipeline.sellHeldItem(player, price, 0).thenAccept(listed -> {
+            if (listed) {
+                player.sendMessage("Item listed for $" + price);
+            }
+        });
 
         return true;
     }
@@ -0,0 +1,191 @@
+package gg.kite.core.commands;
+
+import gg.kite.core.Main;
+import gg.kite.core.database.MongoManager;
+import gg.kite.core.utils.Metrics;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Lists held items without encoding them on the server thread.
+ * <p>
+ * The item and listing fee are taken into escrow on the tick, so neither can be used twice while
+ * the listing is in flight. The item is serialized and validated once on a database worker as
+ * part of the insert, and the outcome is applied back on the tick: on failure the item and fee
+ * are returned. A seller who logged off meanwhile gets the items back when they next join.
+ * <p>
+ * Callers reserve the listing slots up front with {@link MongoManager#reserveListingSlots}; the
+ * pipeline releases them once the listings are stored or rolled back.
+ */
+public class SellPipeline {
+    private final Main plugin;
+    private final MongoManager mongoManager;
+    private final Economy economy;
+
+    public SellPipeline(Main plugin, MongoManager mongoManager, Economy economy) {
+        this.plugin = plugin;
+        this.mongoManager = mongoManager;
+        this.economy = economy;
+    }
+
+    /**
+     * Lists the item in the player's main hand, using one reserved listing slot. Must be called on
+     * the main thread.
+     *
+     * @param fee Charged up front and refunded if the listing fails; 0 for none.
+     * @return Completes on the main thread with true once listed, or false once rolled back or if
+     * the fee could not be charged.
+     */
+    public CompletableFuture<Boolean> sellHeldItem(Player player, double price, double fee) {
+        long start = System.nanoTime();
+        if (!chargeFee(player, fee)) {
+            mongoManager.releaseListingSlots(player.getUniqueId(), 1);
+            return CompletableFuture.completedFuture(false);
+        }
+        ItemStack escrow = player.getInventory().getItemInMainHand().clone();
+        player.getInventory().setItemInMainHand(null);
+        Metrics.mainThread("sell").observeNanos(System.nanoTime() - start);
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        mongoManager.addListing(player.getUniqueId(), escrow, price).whenComplete((v, ex) -> {
+            // Once stored the listing is indexed and counts on its own
+            mongoManager.releaseListingSlots(player.getUniqueId(), 1);
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (ex == null) {
+                    result.complete(true);
+                    return;
+                }
+                rollback(player, List.of(escrow), fee);
+                player.sendMessage("§cError listing item: " + causeOf(ex).getMessage());
+                result.complete(false);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * @return How many stacks in the player's inventory match the held item, up to {@code limit}.
+     */
+    public int countSimilarStacks(Player player, int limit) {
+        return similarSlots(player, limit).size();
+    }
+
+    /**
+     * Lists the held item and every similar stack in the player's inventory, up to {@code limit}
+     * stacks, one listing per stack. {@code limit} listing slots must have been reserved. Must be
+     * called on the main thread.
+     *
+     * @param feeEach Charged per stack up front, and refunded for every stack that is not listed.
+     * @return Completes on the main thread with the number of stacks listed; 0 if the fees could
+     * not be charged.
+     */
+    public CompletableFuture<Integer> sellSimilarItems(Player player, double priceEach, double feeEach, int limit) {
+        long start = System.nanoTime();
+        PlayerInventory inventory = player.getInventory();
+        List<Integer> slots = similarSlots(player, limit);
+        double fee = feeEach * slots.size();
+        if (!chargeFee(player, fee)) {
+            mongoManager.releaseListingSlots(player.getUniqueId(), limit);
+            return CompletableFuture.completedFuture(0);
+        }
+        List<ItemStack> escrow = new ArrayList<>();
+        for (int slot : slots) {
+            escrow.add(inventory.getItem(slot).clone());
+            inventory.setItem(slot, null);
+        }
+        Metrics.mainThread("sell").observeNanos(System.nanoTime() - start);
+
+        // Slots reserved for stacks that are no longer there
+        mongoManager.releaseListingSlots(player.getUniqueId(), limit - escrow.size());
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        mongoManager.addListings(player.getUniqueId(), escrow, priceEach).whenComplete((rejected, ex) -> {
+            mongoManager.releaseListingSlots(player.getUniqueId(), escrow.size());
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (ex != null) {
+                    rollback(player, escrow, fee);
+                    player.sendMessage("§cError listing items: " + causeOf(ex).getMessage());
+                    result.complete(0);
+                    return;
+                }
+                if (!rejected.isEmpty()) {
+                    rollback(player, rejected, feeEach * rejected.size());
+                    player.sendMessage("§c" + rejected.size() + " item(s) could not be listed and were returned.");
+                }
+                result.complete(escrow.size() - rejected.size());
+            });
+        });
+        return result;
+    }
+
+    // The held item's slot first, then matching storage slots in inventory order
+    private List<Integer> similarSlots(Player player, int limit) {
+        PlayerInventory inventory = player.getInventory();
+        ItemStack held = inventory.getItemInMainHand();
+        List<Integer> slots = new ArrayList<>();
+        if (held.getType().isAir() || limit <= 0) {
+            return slots;
+        }
+
+        int heldSlot = inventory.getHeldItemSlot();
+        slots.add(heldSlot);
+        ItemStack[] contents = inventory.getStorageContents();
+        for (int slot = 0; slot < contents.length && slots.size() < limit; slot++) {
+            if (slot != heldSlot && contents[slot] != null && held.isSimilar(contents[slot])) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    // Takes the fee before anything is put in escrow, so a refused payment leaves nothing to undo
+    private boolean chargeFee(Player player, double fee) {
+        if (fee <= 0) {
+            return true;
+        }
+        EconomyResponse response = economy.withdrawPlayer(player, fee);
+        if (!response.transactionSuccess()) {
+            player.sendMessage("§cCould not charge the listing fee: " + response.errorMessage);
+            return false;
+        }
+        return true;
+    }
+
+    private void rollback(Player player, List<ItemStack> escrow, double fee) {
+        if (fee > 0) {
+            economy.depositPlayer(player, fee);
+        }
+        // The Player handed to us goes stale once they log off, even if they have rejoined since
+        Player online = Bukkit.getPlayer(player.getUniqueId());
+        if (online == null) {
+            mongoManager.returnItemsLater(player.getUniqueId(), escrow).whenComplete((unstored, ex) -> {
+                List<ItemStack> lost = ex != null ? escrow : unstored;
+                if (lost.isEmpty()) {
+                    return;
+                }
+                // Nothing left to keep them in; dropping them where the seller logged off is the last resort
+                plugin.getLogger().warning("Could not keep " + lost.size() + " returned item(s) for "
+                        + player.getUniqueId() + (ex != null ? ": " + causeOf(ex).getMessage() : "") + "; dropping them");
+                Bukkit.getScheduler().runTask(plugin, () ->
+                        lost.forEach(item -> player.getWorld().dropItemNaturally(player.getLocation(), item)));
+            });
+            return;
+        }
+        // Anything that no longer fits is dropped at their feet
+        online.getInventory().addItem(escrow.toArray(ItemStack[]::new)).values()
+                .forEach(leftover -> online.getWorld().dropItemNaturally(online.getLocation(), leftover));
+    }
+
+    private static Throwable causeOf(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package gg.kite.core.commands;
+
+import gg.kite.core.database.MongoManager;
+import gg.kite.core.database.PlayerData;
+import gg.kite.core.database.TransactionCursor;
+import gg.kite.core.database.TransactionRole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns page numbers from the history commands into keyset queries.
+ * <p>
+ * For each viewer and history it remembers where every page seen so far ends, so the next page
+ * is a single range query starting after the previous page's last transaction. Jumping past the
+ * pages seen so far first walks the index for the missing page boundaries. Asking for page 1
+ * starts over, so new trades show up there.
+ */
+public class TransactionPager {
+    private static final int MAX_HISTORIES = 256;
+
+    private final MongoManager mongoManager;
+    private final int pageSize;
+    // Cursor of the last transaction on each page seen, by viewer and history; least recently used dropped first
+    private final Map<String, List<TransactionCursor>> pageEnds = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<TransactionCursor>> eldest) {
+            return size() > MAX_HISTORIES;
+        }
+    };
+
+    public TransactionPager(MongoManager mongoManager, int pageSize) {
+        this.mongoManager = mongoManager;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param viewer   Identifies who is paging, e.g. the sender's name.
+     * @param playerId Whose history to read.
+     * @param page     The 1-based page number.
+     * @return The transactions on the page, empty if the history has fewer pages.
+     */
+    public CompletableFuture<List<PlayerData.Transaction>> getPage(String viewer, UUID playerId, TransactionRole role, int page) {
+        String key = viewer + '/' + playerId + '/' + role;
+        List<TransactionCursor> known;
+        synchronized (pageEnds) {
+            known = page == 1 ? new ArrayList<>() : new ArrayList<>(pageEnds.getOrDefault(key, List.of()));
+        }
+
+        CompletableFuture<List<TransactionCursor>> ends = CompletableFuture.completedFuture(known);
+        int missing = page - 1 - known.size();
+        if (missing > 0) {
+            ends = mongoManager.getTransactionPageEnds(playerId, role, known.isEmpty() ? null : known.getLast(), pageSize, missing)
+                    .thenApply(found -> {
+                        known.addAll(found);
+                        return known;
+                    });
+        }
+
+        return ends.thenCompose(cursors -> {
+            if (cursors.size() < page - 1) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+            TransactionCursor after = page == 1 ? null : cursors.get(page - 2);
+            return mongoManager.getTransactions(playerId, role, after, pageSize).thenApply(result -> {
+                if (cursors.size() == page - 1 && result.last() != null && result.transactions().size() == pageSize) {
+                    cursors.add(result.last());
+                }
+                synchronized (pageEnds) {
+                    pageEnds.put(key, cursors);
+                }
+                return result.transactions();
+            });
+        });
+    }
+}
\ No newline at end of file
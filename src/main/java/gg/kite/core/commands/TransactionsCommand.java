@@ -2,7 +2,8 @@ package gg.kite.core.commands;
 
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.database.PlayerData;
-import org.bukkit.Bukkit;
+import gg.kite.core.database.TransactionRole;
+import gg.kite.core.utils.PlayerNameCache;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -15,6 +16,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class TransactionsCommand implements CommandExecutor, TabCompleter {
@@ -22,9 +24,11 @@ public class TransactionsCommand implements CommandExecutor, TabCompleter {
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     private static final int TRANSACTIONS_PER_PAGE = 5;
     private static final List<String> SUBCOMMANDS = Arrays.asList("buy", "sell", "page");
+    private final TransactionPager pager;
 
     public TransactionsCommand(MongoManager mongoManager) {
         this.mongoManager = mongoManager;
+        this.pager = new TransactionPager(mongoManager, TRANSACTIONS_PER_PAGE);
     }
 
     @Override
@@ -66,53 +70,49 @@ public class TransactionsCommand implements CommandExecutor, TabCompleter {
             }
         }
 
-        final String finalFilter = filter;
+        TransactionRole transactionRole = filter == null ? TransactionRole.ANY
+                : filter.equals("buy") ? TransactionRole.BUYER : TransactionRole.SELLER;
         final int finalPage = page;
 
         player.sendMessage("Fetching transaction history...");
 
-        mongoManager.getPlayerData(playerId).thenAccept(playerData -> {
-            List<PlayerData.Transaction> transactions = playerData.getTransactions();
-            if (finalFilter != null) {
-                transactions = transactions.stream()
-                        .filter(t -> finalFilter.equals("buy") ? t.getBuyer().equals(playerId) : t.getSeller().equals(playerId))
-                        .collect(Collectors.toList());
-            }
-
-            if (transactions.isEmpty()) {
+        mongoManager.countTransactions(playerId, transactionRole).thenCompose(total -> {
+            if (total == 0) {
                 player.sendMessage("You have no transaction history.");
-                return;
+                return CompletableFuture.<Void>completedFuture(null);
             }
 
-            int totalPages = (int) Math.ceil((double) transactions.size() / TRANSACTIONS_PER_PAGE);
+            int totalPages = (int) Math.ceil((double) total / TRANSACTIONS_PER_PAGE);
             if (finalPage > totalPages) {
                 player.sendMessage("Invalid page number! Max page: " + totalPages);
-                return;
+                return CompletableFuture.<Void>completedFuture(null);
             }
 
-            int start = (finalPage - 1) * TRANSACTIONS_PER_PAGE;
-            int end = Math.min(start + TRANSACTIONS_PER_PAGE, transactions.size());
-
-            player.sendMessage("§6=== Transaction History (Page " + finalPage + "/" + totalPages + ") ===");
-            for (int i = start; i < end; i++) {
-                PlayerData.Transaction transaction = transactions.get(i);
-                String role = transaction.getBuyer().equals(playerId) ? "Bought" : "Sold";
-                String otherParty = transaction.getBuyer().equals(playerId) ? transaction.getSeller().toString() : transaction.getBuyer().toString();
-                String otherName = Bukkit.getOfflinePlayer(UUID.fromString(otherParty)).getName();
-                String formattedDate = dateFormat.format(new Date(transaction.getTimestamp()));
-
-                player.sendMessage(String.format(
-                        "§e%s: %s %s for $%.2f from/to %s%s",
-                        formattedDate,
-                        role,
-                        transaction.getItem().getType().name(),
-                        transaction.getPrice(),
-                        otherName != null ? otherName : "Unknown",
-                        transaction.isBlackMarket() ? " (Black Market)" : ""
-                ));
-            }
-            player.sendMessage("§6Use /transactions [buy|sell] <page> to filter or navigate");
-            player.sendMessage("§6=====================");
+            return pager.getPage(playerId.toString(), playerId, transactionRole, finalPage)
+                    .thenCompose(transactions -> PlayerNameCache.resolve(transactions.stream()
+                            .map(transaction -> transaction.getBuyer().equals(playerId) ? transaction.getSeller() : transaction.getBuyer())
+                            .toList()).thenApply(v -> transactions))
+                    .thenAccept(transactions -> {
+                        player.sendMessage("§6=== Transaction History (Page " + finalPage + "/" + totalPages + ") ===");
+                        for (PlayerData.Transaction transaction : transactions) {
+                            String role = transaction.getBuyer().equals(playerId) ? "Bought" : "Sold";
+                            String otherParty = transaction.getBuyer().equals(playerId) ? transaction.getSeller().toString() : transaction.getBuyer().toString();
+                            String otherName = PlayerNameCache.get(UUID.fromString(otherParty));
+                            String formattedDate = dateFormat.format(new Date(transaction.getTimestamp()));
+
+                            player.sendMessage(String.format(
+                                    "§e%s: %s %s for $%.2f from/to %s%s",
+                                    formattedDate,
+                                    role,
+                                    transaction.getItemName(),
+                                    transaction.getPrice(),
+                                    otherName,
+                                    transaction.isBlackMarket() ? " (Black Market)" : ""
+                            ));
+                        }
+                        player.sendMessage("§6Use /transactions [buy|sell] <page> to filter or navigate");
+                        player.sendMessage("§6=====================");
+                    });
         }).exceptionally(ex -> {
             player.sendMessage("§cError fetching transaction history: " + ex.getMessage());
             return null;
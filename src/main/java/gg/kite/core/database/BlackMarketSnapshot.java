@@ -0,0 +1,53 @@
+package gg.kite.core.database;
+
+import org.bson.Document;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The current black market selection, shared by every player.
+ * <p>
+ * The selection is drawn from the listing index on each {@link #rotate(int)} and served from
+ * memory until the next one. Listings that sell or leave the market in between simply drop out;
+ * they are not replaced until the next rotation.
+ */
+public class BlackMarketSnapshot {
+    private final ListingIndex listingIndex;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<Document> listings = List.of();
+
+    public BlackMarketSnapshot(ListingIndex listingIndex) {
+        this.listingIndex = listingIndex;
+        listingIndex.addListener(this::onListingChange);
+    }
+
+    /**
+     * Registers a callback for every rotation. Callbacks run on the rotating thread.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void rotate(int size) {
+        listings = List.copyOf(listingIndex.sample(size));
+        listeners.forEach(Runnable::run);
+    }
+
+    public List<Document> get() {
+        return listings;
+    }
+
+    private void onListingChange(ListingChange change) {
+        if (change.type() == ListingChange.Type.CREATED) {
+            return;
+        }
+        List<Document> current = listings;
+        Object listingId = change.listing().get("_id");
+        if (current.stream().anyMatch(listing -> listing.get("_id").equals(listingId))) {
+            listings = current.stream()
+                    .filter(listing -> !listing.get("_id").equals(listingId))
+                    .toList();
+        }
+    }
+}
\ No newline at end of file
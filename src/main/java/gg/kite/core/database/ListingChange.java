@@ -0,0 +1,28 @@
+package gg.kite.core.database;
+
+import org.bson.Document;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A listing entering or leaving the marketplace, as seen by {@link ListingIndex} listeners.
+ *
+ * @param type    Why the listing changed.
+ * @param listing The listing as it was stored.
+ */
+public record ListingChange(@NotNull Type type, @NotNull Document listing) {
+
+    public enum Type {
+        CREATED,
+        SOLD,
+        REMOVED,
+        EXPIRED
+    }
+
+    public ListingCursor cursor(ListingSort sort) {
+        return ListingCursor.of(sort, listing);
+    }
+
+    public String listingId() {
+        return listing.get("_id").toString();
+    }
+}
\ No newline at end of file
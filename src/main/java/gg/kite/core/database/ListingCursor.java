@@ -0,0 +1,55 @@
+package gg.kite.core.database;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Position of a listing in one {@link ListingSort} order: the sort field's value, ties broken by
+ * {@code _id}.
+ * <p>
+ * Pages are fetched as "the next N listings after this cursor", so every page costs the same
+ * and a purchase on one page never shifts the contents of the pages after it.
+ */
+public record ListingCursor(@NotNull ListingSort sort, double value, @NotNull ObjectId id) implements Comparable<ListingCursor> {
+
+    /**
+     * @return The listing's position in the default, oldest-first order.
+     */
+    public static ListingCursor of(Document listing) {
+        return of(ListingSort.OLDEST, listing);
+    }
+
+    public static ListingCursor of(ListingSort sort, Document listing) {
+        return new ListingCursor(sort, sort.valueOf(listing), listing.getObjectId("_id"));
+    }
+
+    /**
+     * @return A filter matching every listing that sorts strictly after this cursor.
+     */
+    public Bson after() {
+        String field = sort.getField();
+        Object stored = sort.toStoredValue(value);
+        if (sort.isAscending()) {
+            return Filters.or(
+                    Filters.gt(field, stored),
+                    Filters.and(Filters.eq(field, stored), Filters.gt("_id", id))
+            );
+        }
+        return Filters.or(
+                Filters.lt(field, stored),
+                Filters.and(Filters.eq(field, stored), Filters.lt("_id", id))
+        );
+    }
+
+    @Override
+    public int compareTo(@NotNull ListingCursor other) {
+        int result = Double.compare(value, other.value);
+        if (result == 0) {
+            result = id.compareTo(other.id);
+        }
+        return sort.isAscending() ? result : -result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package gg.kite.core.database;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Expires listings shortly after their deadline in small batches.
+ * <p>
+ * {@link #tick()} is meant to run about once a second. It only compares the clock against the
+ * earliest deadline in the listing index, so it costs nothing until a listing is actually due.
+ * Then one batch at a time is queued on the write executor, each batch re-queuing the next, so a
+ * large expiry wave is spread over many short writes that interleave with everything else instead
+ * of one long {@code deleteMany}. An occasional full sweep also catches listings that were
+ * never indexed, e.g. ones that expired while the server was down.
+ */
+public class ListingExpiryScheduler {
+    private static final int BATCH_SIZE = 200;
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final MongoManager mongoManager;
+    private final Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long lastSweep;
+
+    public ListingExpiryScheduler(MongoManager mongoManager, Logger logger) {
+        this.mongoManager = mongoManager;
+        this.logger = logger;
+    }
+
+    public void tick() {
+        long now = System.currentTimeMillis();
+        boolean sweepDue = now - lastSweep >= SWEEP_INTERVAL_MILLIS;
+        if (!sweepDue && now < mongoManager.getNextExpiry()) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        if (sweepDue) {
+            lastSweep = now;
+        }
+        runBatch();
+    }
+
+    private void runBatch() {
+        mongoManager.expireListings(BATCH_SIZE).whenComplete((expired, ex) -> {
+            if (ex != null) {
+                logger.warning("Failed to expire listings: " + ex.getMessage());
+                running.set(false);
+            } else if (expired >= BATCH_SIZE) {
+                runBatch();
+            } else {
+                running.set(false);
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+package gg.kite.core.database;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-process, write-through copy of the active listings collection.
+ * <p>
+ * {@link MongoManager} updates the index after every successful insert or delete and reloads it
+ * from MongoDB on connect, so the marketplace GUI can page and count listings without touching
+ * the database. Every {@link ListingSort} has its own sorted view, kept in the same order as the
+ * matching compound index in MongoDB, so switching sort order is a map lookup rather than a sort.
+ */
+public class ListingIndex {
+    private final Map<ObjectId, Document> listings = new ConcurrentHashMap<>();
+    private final Map<ListingSort, ConcurrentSkipListMap<ListingCursor, Document>> views = new EnumMap<>(ListingSort.class);
+    // Indexed listings per seller, adjusted in step with the listings map
+    private final Map<String, Integer> sellerCounts = new ConcurrentHashMap<>();
+    // Slots reserved per seller for listings still being stored; only raised under the seller's sellerCounts entry
+    private final Map<String, Integer> reservedSlots = new ConcurrentHashMap<>();
+    // Number of indexed listings, adjusted in step with the listings map
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final List<Consumer<ListingChange>> listeners = new CopyOnWriteArrayList<>();
+
+    public ListingIndex() {
+        for (ListingSort sort : ListingSort.values()) {
+            views.put(sort, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Registers a callback for every listing added to or removed from the index. Callbacks run on
+     * the thread that changed the index, after the change is visible.
+     */
+    public void addListener(Consumer<ListingChange> listener) {
+        listeners.add(listener);
+    }
+
+    public void clear() {
+        listings.clear();
+        sellerCounts.clear();
+        indexed.set(0);
+        for (ConcurrentSkipListMap<ListingCursor, Document> view : views.values()) {
+            view.clear();
+        }
+    }
+
+    public void put(Document listing) {
+        load(listing);
+        notifyListeners(new ListingChange(ListingChange.Type.CREATED, listing));
+    }
+
+    /**
+     * Adds a listing without notifying listeners, for the bulk load on connect.
+     */
+    public void load(Document listing) {
+        if (listings.put(listing.getObjectId("_id"), listing) == null) {
+            indexed.incrementAndGet();
+            sellerCounts.merge(listing.getString("seller"), 1, Integer::sum);
+        }
+        views.forEach((sort, view) -> view.put(ListingCursor.of(sort, listing), listing));
+    }
+
+    /**
+     * Swaps in a newer copy of a listing that is still indexed; does nothing if it has gone.
+     */
+    public void replace(Document listing) {
+        if (listings.replace(listing.getObjectId("_id"), listing) != null) {
+            views.forEach((sort, view) -> view.replace(ListingCursor.of(sort, listing), listing));
+        }
+    }
+
+    public Document get(String listingId) {
+        return ObjectId.isValid(listingId) ? listings.get(new ObjectId(listingId)) : null;
+    }
+
+    public Document get(ObjectId listingId) {
+        return listings.get(listingId);
+    }
+
+    /**
+     * @param reason Reported to listeners if the listing was indexed.
+     */
+    public Document remove(String listingId, ListingChange.Type reason) {
+        if (!ObjectId.isValid(listingId)) {
+            return null;
+        }
+        Document removed = listings.remove(new ObjectId(listingId));
+        if (removed != null) {
+            indexed.decrementAndGet();
+            sellerCounts.computeIfPresent(removed.getString("seller"), (seller, count) -> count > 1 ? count - 1 : null);
+            views.forEach((sort, view) -> view.remove(ListingCursor.of(sort, removed)));
+            notifyListeners(new ListingChange(reason, removed));
+        }
+        return removed;
+    }
+
+    /**
+     * Drops every listing whose expiry is at or before {@code now}, earliest first.
+     *
+     * @param now The current time in milliseconds.
+     * @return The listings that were dropped.
+     */
+    public List<Document> removeExpired(long now) {
+        List<Document> expired = new ArrayList<>();
+        for (ListingCursor deadline : views.get(ListingSort.ENDING_SOON).keySet()) {
+            if (deadline.value() > now) {
+                break;
+            }
+            Document removed = remove(deadline.id().toString(), ListingChange.Type.EXPIRED);
+            if (removed != null) {
+                expired.add(removed);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return The earliest expiry of any indexed listing, or {@link Long#MAX_VALUE} if there are none.
+     */
+    public long nextExpiry() {
+        Map.Entry<ListingCursor, Document> first = views.get(ListingSort.ENDING_SOON).firstEntry();
+        return first != null ? (long) first.getKey().value() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns up to {@code limit} active listings that sort after {@code after} in {@code sort} order.
+     *
+     * @param after The last listing of the previous page, or null for the first page. Must belong
+     *              to the same sort.
+     * @param limit The maximum number of listings to return.
+     */
+    public List<Document> getPage(ListingSort sort, ListingCursor after, int limit) {
+        long now = System.currentTimeMillis();
+        ConcurrentSkipListMap<ListingCursor, Document> view = views.get(sort);
+        Iterable<Document> candidates = after == null ? view.values() : view.tailMap(after, false).values();
+        List<Document> result = new ArrayList<>(Math.min(limit, listings.size()));
+
+        for (Document listing : candidates) {
+            if (!isActive(listing, now)) {
+                continue;
+            }
+            result.add(listing);
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks up to {@code size} active listings uniformly at random in a single pass (reservoir
+     * sampling), in random order.
+     */
+    public List<Document> sample(int size) {
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Document> reservoir = new ArrayList<>(size);
+        int seen = 0;
+        for (Document listing : listings.values()) {
+            if (!isActive(listing, now)) {
+                continue;
+            }
+            seen++;
+            if (reservoir.size() < size) {
+                reservoir.add(listing);
+            } else {
+                int slot = random.nextInt(seen);
+                if (slot < size) {
+                    reservoir.set(slot, listing);
+                }
+            }
+        }
+        Collections.shuffle(reservoir, random);
+        return reservoir;
+    }
+
+    /**
+     * @return The number of listings indexed or reserved for {@code seller}. Listings past their
+     * expiry count until the expiry scheduler removes them, which happens within about a second.
+     */
+    public int countBySeller(UUID seller) {
+        String key = seller.toString();
+        return sellerCounts.getOrDefault(key, 0) + reservedSlots.getOrDefault(key, 0);
+    }
+
+    /**
+     * Reserves up to {@code wanted} listing slots for {@code seller} without taking their indexed
+     * plus reserved listings past {@code max}. The check and the reservation are one atomic step,
+     * so concurrent sells cannot both take the last slot. Reserved slots count towards
+     * {@link #countBySeller(UUID)} until {@link #releaseSlots(UUID, int) released}, which should
+     * happen once the listings are indexed or abandoned.
+     *
+     * @return The number of slots reserved, between 0 and {@code wanted}.
+     */
+    public int reserveSlots(UUID seller, int wanted, int max) {
+        int[] granted = new int[1];
+        // Computing on the seller's entry serializes this with every other change to their counts
+        sellerCounts.compute(seller.toString(), (key, indexed) -> {
+            int used = (indexed != null ? indexed : 0) + reservedSlots.getOrDefault(key, 0);
+            granted[0] = Math.max(0, Math.min(wanted, max - used));
+            if (granted[0] > 0) {
+                reservedSlots.merge(key, granted[0], Integer::sum);
+            }
+            return indexed;
+        });
+        return granted[0];
+    }
+
+    public void releaseSlots(UUID seller, int slots) {
+        if (slots > 0) {
+            reservedSlots.computeIfPresent(seller.toString(), (key, reserved) -> reserved > slots ? reserved - slots : null);
+        }
+    }
+
+    /**
+     * @return The number of active listings. Only the listings that have expired but are still
+     * waiting for the expiry scheduler are walked, at the head of the ending-soon view, so this
+     * stays cheap however many listings are indexed.
+     */
+    public int count() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (ListingCursor deadline : views.get(ListingSort.ENDING_SOON).keySet()) {
+            if (deadline.value() > now) {
+                break;
+            }
+            expired++;
+        }
+        return Math.max(0, indexed.get() - expired);
+    }
+
+    private void notifyListeners(ListingChange change) {
+        for (Consumer<ListingChange> listener : listeners) {
+            listener.accept(change);
+        }
+    }
+
+    private static boolean isActive(Document listing, long now) {
+        return listing.getLong("expiresAt") > now;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package gg.kite.core.database;
+
+import gg.kite.core.utils.ItemCache;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from search terms to active listings.
+ * <p>
+ * Each listing is indexed under the words of its material name, its display name and its
+ * enchantments (including those stored in enchanted books). The term map is sorted, so a query
+ * word matches every term it is a prefix of, and a multi-word query returns listings matching
+ * all of its words. Updates follow {@link ListingIndex} changes; results are always re-checked
+ * against the listing index, so a listing that is gone or expired is never returned.
+ */
+public class ListingSearchIndex {
+    private static final Pattern COLOR_CODE = Pattern.compile("§[0-9a-fk-orx]", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ListingIndex listingIndex;
+    private final ConcurrentSkipListMap<String, Set<ObjectId>> postings = new ConcurrentSkipListMap<>();
+    private final Map<ObjectId, Set<String>> termsByListing = new ConcurrentHashMap<>();
+
+    public ListingSearchIndex(ListingIndex listingIndex) {
+        this.listingIndex = listingIndex;
+        listingIndex.addListener(change -> {
+            if (change.type() == ListingChange.Type.CREATED) {
+                add(change.listing());
+            } else {
+                remove(change.listing().getObjectId("_id"));
+            }
+        });
+    }
+
+    /**
+     * Indexes every listing currently in the listing index. Deserializes each item, so run it off
+     * the main thread.
+     */
+    public void rebuild() {
+        for (Document listing : listingIndex.getPage(ListingSort.OLDEST, null, Integer.MAX_VALUE)) {
+            add(listing);
+        }
+    }
+
+    /**
+     * @param query    Words to match against material, display name and enchantments.
+     * @param minPrice Lowest price to include.
+     * @param maxPrice Highest price to include.
+     * @param limit    Maximum number of results.
+     * @return Matching active listings, cheapest first.
+     */
+    public List<Document> search(String query, double minPrice, double maxPrice, int limit) {
+        Set<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        Set<ObjectId> matches = null;
+        for (String word : words) {
+            Set<ObjectId> wordMatches = new HashSet<>();
+            postings.subMap(word, true, word + Character.MAX_VALUE, true)
+                    .values()
+                    .forEach(wordMatches::addAll);
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.retainAll(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<Document> results = new ArrayList<>();
+        for (ObjectId listingId : matches) {
+            Document listing = listingIndex.get(listingId);
+            // Gone, or expired and waiting for the expiry scheduler
+            if (listing == null || listing.getLong("expiresAt") <= now) {
+                continue;
+            }
+            double price = listing.getDouble("price");
+            if (price >= minPrice && price <= maxPrice) {
+                results.add(listing);
+            }
+        }
+        results.sort(Comparator.comparingDouble(listing -> listing.getDouble("price")));
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    public int size() {
+        return termsByListing.size();
+    }
+
+    private void add(Document listing) {
+        ObjectId listingId = listing.getObjectId("_id");
+        if (termsByListing.containsKey(listingId)) {
+            return;
+        }
+        ItemStack item = ItemCache.get(listing.get("item"));
+        if (item == null) {
+            return;
+        }
+
+        Set<String> terms = terms(item);
+        termsByListing.put(listingId, terms);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(listingId);
+        }
+        // Removed while we were indexing it
+        if (listingIndex.get(listingId) == null) {
+            remove(listingId);
+        }
+    }
+
+    private void remove(ObjectId listingId) {
+        Set<String> terms = termsByListing.remove(listingId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfPresent(term, (key, ids) -> {
+                ids.remove(listingId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static Set<String> terms(ItemStack item) {
+        Set<String> terms = new HashSet<>(tokenize(item.getType().name()));
+        if (item.hasItemMeta()) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta.hasDisplayName()) {
+                terms.addAll(tokenize(COLOR_CODE.matcher(meta.getDisplayName()).replaceAll("")));
+            }
+            if (meta instanceof EnchantmentStorageMeta storage) {
+                storage.getStoredEnchants().keySet().forEach(enchantment -> terms.addAll(tokenize(enchantment)));
+            }
+        }
+        item.getEnchantments().keySet().forEach(enchantment -> terms.addAll(tokenize(enchantment)));
+        return terms;
+    }
+
+    private static Set<String> tokenize(Enchantment enchantment) {
+        return tokenize(enchantment.getKey().getKey());
+    }
+
+    private static Set<String> tokenize(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
\ No newline at end of file
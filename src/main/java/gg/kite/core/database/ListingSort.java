@@ -0,0 +1,67 @@
+package gg.kite.core.database;
+
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * Orders the marketplace can be browsed in. Ties are broken by {@code _id} in the same
+ * direction, so every order is total and can be paged with a {@link ListingCursor}.
+ */
+public enum ListingSort {
+    OLDEST("Oldest first", "listedAt", true),
+    NEWEST("Newest first", "listedAt", false),
+    PRICE_LOW("Price: low to high", "price", true),
+    PRICE_HIGH("Price: high to low", "price", false),
+    ENDING_SOON("Ending soon", "expiresAt", true);
+
+    private final String displayName;
+    private final String field;
+    private final boolean ascending;
+
+    ListingSort(String displayName, String field, boolean ascending) {
+        this.displayName = displayName;
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public ListingSort next() {
+        ListingSort[] sorts = values();
+        return sorts[(ordinal() + 1) % sorts.length];
+    }
+
+    public double valueOf(Document listing) {
+        return ((Number) listing.get(field)).doubleValue();
+    }
+
+    /**
+     * @return The value as stored in MongoDB: timestamps are longs, prices doubles.
+     */
+    public Object toStoredValue(double value) {
+        return field.equals("price") ? value : (Object) (long) value;
+    }
+
+    public Bson sort() {
+        return ascending ? Sorts.ascending(field, "_id") : Sorts.descending(field, "_id");
+    }
+
+    /**
+     * @return The compound index serving this order; MongoDB walks it backwards for descending sorts.
+     */
+    public Bson index() {
+        return Indexes.ascending(field, "_id");
+    }
+}
\ No newline at end of file
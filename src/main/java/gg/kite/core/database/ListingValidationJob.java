@@ -0,0 +1,187 @@
+package gg.kite.core.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import gg.kite.core.utils.InstrumentedExecutor;
+import gg.kite.core.utils.ItemUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Removes listings whose item can no longer be deserialized, e.g. after a Minecraft update.
+ * <p>
+ * Listings are walked in {@code _id} order in chunks. Each chunk is decoded in parallel on the
+ * shared item codec pool, its invalid listings are deleted and pulled from their sellers in bulk,
+ * and the last {@code _id} seen is saved to the {@code meta} collection. A restart resumes after that checkpoint; a new
+ * server version starts over, since that is when stored items are most likely to break. The job
+ * pauses briefly between chunks so it never competes with gameplay for long.
+ */
+public class ListingValidationJob {
+    private static final String CHECKPOINT_ID = "listing-validation";
+    private static final int CHUNK_SIZE = 500;
+    private static final long PAUSE_MILLIS = 50;
+    private static final int PROGRESS_EVERY = 10;
+
+    private final MongoCollection<Document> listings;
+    private final MongoCollection<Document> players;
+    private final MongoCollection<Document> meta;
+    private final Consumer<String> onInvalid;
+    private final String serverVersion;
+    private final InstrumentedExecutor decoders;
+    private final int parallelism;
+    private final Logger logger;
+    private volatile boolean cancelled;
+
+    /**
+     * @param onInvalid     Called with the id of each listing removed.
+     * @param serverVersion Checkpoints from a different version are discarded.
+     * @param decoders      Pool to decode items on; each chunk is split into one slice per thread.
+     */
+    public ListingValidationJob(MongoCollection<Document> listings, MongoCollection<Document> players,
+                                MongoCollection<Document> meta, Consumer<String> onInvalid,
+                                String serverVersion, InstrumentedExecutor decoders, Logger logger) {
+        this.listings = listings;
+        this.players = players;
+        this.meta = meta;
+        this.onInvalid = onInvalid;
+        this.serverVersion = serverVersion;
+        this.decoders = decoders;
+        this.parallelism = Math.max(1, decoders.getMaxConcurrency());
+        this.logger = logger;
+    }
+
+    /**
+     * Stops the job after the chunk in progress; the checkpoint keeps its place.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Result run() {
+        Result result = new Result();
+        ObjectId checkpoint = loadCheckpoint();
+        long total = listings.countDocuments(checkpoint != null ? Filters.gt("_id", checkpoint) : Filters.empty());
+        if (checkpoint != null) {
+            logger.info("Resuming listing validation after " + checkpoint + " (" + total + " listings left)");
+        }
+
+        try (MongoCursor<Document> cursor = listings.find(checkpoint != null ? Filters.gt("_id", checkpoint) : Filters.empty())
+                .sort(Sorts.ascending("_id"))
+                .batchSize(CHUNK_SIZE)
+                .iterator()) {
+            List<Document> chunk = new ArrayList<>(CHUNK_SIZE);
+            int chunks = 0;
+            while (cursor.hasNext() && !cancelled) {
+                chunk.add(cursor.next());
+                if (chunk.size() < CHUNK_SIZE && cursor.hasNext()) {
+                    continue;
+                }
+
+                validate(chunk, result);
+                saveCheckpoint(chunk.getLast().getObjectId("_id"));
+                chunk.clear();
+
+                if (++chunks % PROGRESS_EVERY == 0) {
+                    logger.info(String.format("Listing validation: %d/%d checked, %d invalid removed",
+                            result.checked, total, result.invalid));
+                }
+                Thread.sleep(PAUSE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        result.completed = !cancelled && !Thread.currentThread().isInterrupted();
+        return result;
+    }
+
+    private void validate(List<Document> chunk, Result result) {
+        int sliceSize = (chunk.size() + parallelism - 1) / parallelism;
+        List<CompletableFuture<List<Document>>> slices = new ArrayList<>();
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<Document> slice = chunk.subList(from, Math.min(chunk.size(), from + sliceSize));
+            slices.add(CompletableFuture.supplyAsync(() -> slice.stream()
+                    .filter(listing -> ItemUtils.deserializeItem(listing.get("item")) == null)
+                    .toList(), decoders));
+        }
+
+        List<ObjectId> invalidIds = new ArrayList<>();
+        Map<String, List<String>> invalidBySeller = new HashMap<>();
+        for (CompletableFuture<List<Document>> slice : slices) {
+            for (Document listing : slice.join()) {
+                ObjectId listingId = listing.getObjectId("_id");
+                invalidIds.add(listingId);
+                invalidBySeller.computeIfAbsent(listing.getString("seller"), seller -> new ArrayList<>())
+                        .add(listingId.toString());
+            }
+        }
+        result.checked += chunk.size();
+        if (invalidIds.isEmpty()) {
+            return;
+        }
+
+        listings.deleteMany(Filters.in("_id", invalidIds));
+        List<WriteModel<Document>> sellerUpdates = new ArrayList<>(invalidBySeller.size());
+        invalidBySeller.forEach((seller, listingIds) -> sellerUpdates.add(new UpdateOneModel<>(
+                Filters.eq("playerId", seller),
+                Updates.pullAll("activeListings", listingIds)
+        )));
+        players.bulkWrite(sellerUpdates, new BulkWriteOptions().ordered(false));
+        invalidIds.forEach(listingId -> onInvalid.accept(listingId.toString()));
+        result.invalid += invalidIds.size();
+    }
+
+    private ObjectId loadCheckpoint() {
+        Document doc = meta.find(Filters.eq("_id", CHECKPOINT_ID)).first();
+        if (doc == null || !serverVersion.equals(doc.getString("serverVersion"))) {
+            return null;
+        }
+        return doc.getObjectId("lastId");
+    }
+
+    private void saveCheckpoint(ObjectId lastId) {
+        meta.replaceOne(Filters.eq("_id", CHECKPOINT_ID),
+                new Document("_id", CHECKPOINT_ID)
+                        .append("serverVersion", serverVersion)
+                        .append("lastId", lastId)
+                        .append("updatedAt", System.currentTimeMillis()),
+                new ReplaceOptions().upsert(true));
+    }
+
+    public static class Result {
+        private long checked;
+        private long invalid;
+        private boolean completed;
+
+        public long getChecked() {
+            return checked;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public String describe() {
+            return String.format("%s: %d listings checked, %d invalid removed",
+                    completed ? "complete" : "stopped early", checked, invalid);
+        }
+    }
+}
\ No newline at end of file
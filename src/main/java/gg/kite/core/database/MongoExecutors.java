@@ -0,0 +1,69 @@
+package gg.kite.core.database;
+
+import gg.kite.core.utils.InstrumentedExecutor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools owned by the plugin for blocking MongoDB driver calls.
+ * <p>
+ * Reads and writes run in separate bulkheads so a burst of slow writes cannot hold up GUI
+ * lookups, and neither ever runs on {@code ForkJoinPool.commonPool}, which other plugins share.
+ */
+public class MongoExecutors {
+    private final InstrumentedExecutor reads;
+    private final InstrumentedExecutor writes;
+    private final InstrumentedExecutor maintenance;
+    private final InstrumentedExecutor codec;
+
+    public MongoExecutors(boolean virtualThreads, int readConcurrency, int writeConcurrency) {
+        this.reads = virtualThreads
+                ? InstrumentedExecutor.virtual("mongo-read", readConcurrency)
+                : InstrumentedExecutor.platform("mongo-read", readConcurrency);
+        this.writes = virtualThreads
+                ? InstrumentedExecutor.virtual("mongo-write", writeConcurrency)
+                : InstrumentedExecutor.platform("mongo-write", writeConcurrency);
+        this.maintenance = InstrumentedExecutor.platform("mongo-maintenance", 1);
+        this.codec = InstrumentedExecutor.platform("item-codec",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public InstrumentedExecutor reads() {
+        return reads;
+    }
+
+    public InstrumentedExecutor writes() {
+        return writes;
+    }
+
+    /**
+     * Single thread for long-running background jobs such as migrations and validation, so they
+     * run one after another and never occupy the read or write bulkheads.
+     */
+    public InstrumentedExecutor maintenance() {
+        return maintenance;
+    }
+
+    /**
+     * CPU-bound item serialization, fanned out when many items are encoded at once. Never blocks
+     * on the database.
+     */
+    public InstrumentedExecutor codec() {
+        return codec;
+    }
+
+    public List<InstrumentedExecutor> all() {
+        return List.of(reads, writes, maintenance, codec);
+    }
+
+    /**
+     * Lets queued writes finish before the MongoDB client is closed.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        maintenance.shutdown(timeout, unit);
+        codec.shutdown(timeout, unit);
+        writes.shutdown(timeout, unit);
+        reads.shutdown(timeout, unit);
+    }
+}
\ No newline at end of file
@@ -4,28 +4,74 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import gg.kite.core.utils.Histogram;
+import gg.kite.core.utils.ItemCache;
 import gg.kite.core.utils.ItemUtils;
+import gg.kite.core.utils.Metrics;
 import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.bukkit.Bukkit;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 public class MongoManager {
+    private static final int INDEX_LOAD_BATCH_SIZE = 1000;
+    // Newest first, ties broken by _id; matches the (buyer|seller, timestamp, _id) indexes
+    private static final Bson TRANSACTION_ORDER = Sorts.descending("timestamp", "_id");
+
     private MongoClient client;
     private MongoDatabase database;
     private MongoCollection<Document> listings;
     private MongoCollection<Document> players;
     private MongoCollection<Document> transactions;
+    private MongoCollection<Document> meta;
     private final String connectionString;
+    private final MongoExecutors executors;
+    private final ListingIndex listingIndex = new ListingIndex();
+    private final BlackMarketSnapshot blackMarket = new BlackMarketSnapshot(listingIndex);
+    private final ListingSearchIndex searchIndex = new ListingSearchIndex(listingIndex);
+    private volatile ListingValidationJob validationJob;
+    private volatile PurchaseJournal purchaseJournal;
+    // Local mirror of the reservations this server holds, so losing buyers are turned away without a round trip
+    private final Map<ObjectId, Reservation> reservations = new ConcurrentHashMap<>();
+    private static final long RESERVATION_MILLIS = 30_000;
+    public static final String OPERATION_LATENCY = "marketplace_mongo_operation_seconds";
+
+    private record Reservation(UUID buyer, long until) {
+    }
 
-    public MongoManager(String connectionString) {
+    public MongoManager(String connectionString, MongoExecutors executors) {
         this.connectionString = connectionString;
+        this.executors = executors;
+        listingIndex.addListener(change -> reservations.remove(change.listing().getObjectId("_id")));
     }
 
     public void connect() {
@@ -37,14 +83,21 @@ public class MongoManager {
                 listings = database.getCollection("listings");
                 players = database.getCollection("players");
                 transactions = database.getCollection("transactions");
+                meta = database.getCollection("meta");
 
                 listings.createIndex(Indexes.descending("expiresAt"));
+                // One compound index per sort order; opposite directions share an index
+                for (ListingSort sort : ListingSort.values()) {
+                    listings.createIndex(sort.index());
+                }
                 players.createIndex(Indexes.ascending("playerId"));
+                transactions.createIndex(Indexes.compoundIndex(Indexes.ascending("buyer"), Indexes.descending("timestamp", "_id")));
+                transactions.createIndex(Indexes.compoundIndex(Indexes.ascending("seller"), Indexes.descending("timestamp", "_id")));
 
                 // Test the connection by listing collections
                 database.listCollectionNames().first();
 
-                cleanupInvalidListings();
+                loadListingIndex();
 
                 return;
             } catch (Exception e) {
@@ -62,128 +115,682 @@ public class MongoManager {
     }
 
     public void disconnect() {
+        ListingValidationJob job = validationJob;
+        if (job != null) {
+            job.cancel();
+        }
+        PurchaseJournal journal = purchaseJournal;
+        if (journal != null) {
+            journal.close(5, TimeUnit.SECONDS);
+            purchaseJournal = null;
+        }
+        executors.shutdown(10, TimeUnit.SECONDS);
         if (client != null) {
             client.close();
             client = null;
         }
     }
 
+    /**
+     * Serializes, validates and stores a listing, all on a write worker. The caller must not
+     * modify {@code item} until the future completes.
+     */
     public CompletableFuture<Void> addListing(UUID seller, ItemStack item, double price) {
-        return CompletableFuture.runAsync(() -> {
-            Document doc = new Document()
-                    .append("seller", seller.toString())
-                    .append("item", ItemUtils.serializeItem(item))
-                    .append("price", price)
-                    .append("listedAt", System.currentTimeMillis())
-                    .append("expiresAt", System.currentTimeMillis() + 7 * 24 * 60 * 60 * 1000); // 7 days
+        return runTimed("addListing", () -> {
+            Binary serializedItem = encodeListingItem(item);
+            if (serializedItem == null) {
+                throw new IllegalArgumentException("Item could not be serialized");
+            }
+
+            Document doc = newListing(seller, serializedItem, price, System.currentTimeMillis());
             listings.insertOne(doc);
+            listingIndex.put(doc);
 
-            // Update PlayerData
-            PlayerData playerData = getPlayerData(seller).join();
-            playerData.addListing(doc.getObjectId("_id").toString());
-            playerData.save(players);
-        });
+            PlayerData.addListing(players, seller, doc.getObjectId("_id").toString());
+        }, executors.writes());
     }
 
-    public CompletableFuture<List<Document>> getActiveListings(int page, int pageSize) {
-        return CompletableFuture.supplyAsync(() -> listings.find(Filters.gt("expiresAt", System.currentTimeMillis()))
-                .skip((page - 1) * pageSize)
-                .limit(pageSize)
-                .into(new ArrayList<>()));
+    /**
+     * Lists several items at the same price. Items are serialized and validated in parallel on
+     * the codec pool, then stored with one {@code insertMany} and one update of the seller's
+     * player data. The caller must not modify the items until the future completes.
+     *
+     * @return The items that failed validation and were not listed.
+     */
+    public CompletableFuture<List<ItemStack>> addListings(UUID seller, List<ItemStack> items, double price) {
+        List<CompletableFuture<Binary>> encoded = items.stream()
+                .map(item -> CompletableFuture.supplyAsync(() -> encodeListingItem(item), executors.codec()))
+                .toList();
+
+        return CompletableFuture.allOf(encoded.toArray(CompletableFuture[]::new)).thenApplyAsync(v -> {
+            long now = System.currentTimeMillis();
+            List<Document> docs = new ArrayList<>();
+            List<ItemStack> rejected = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                Binary serializedItem = encoded.get(i).join();
+                if (serializedItem == null) {
+                    rejected.add(items.get(i));
+                } else {
+                    docs.add(newListing(seller, serializedItem, price, now));
+                }
+            }
+            if (docs.isEmpty()) {
+                return rejected;
+            }
+
+            operationLatency("addListings").time(() -> {
+                listings.insertMany(docs);
+                docs.forEach(listingIndex::put);
+                PlayerData.addListings(players, seller, docs.stream()
+                        .map(doc -> doc.getObjectId("_id").toString())
+                        .toList());
+            });
+            return rejected;
+        }, executors.writes());
+    }
+
+    /**
+     * Serializes an item for a new listing and checks that it reads back.
+     *
+     * @return The stored form, or null if the item cannot round-trip.
+     */
+    private static Binary encodeListingItem(ItemStack item) {
+        Binary serializedItem = ItemUtils.serializeItem(item);
+        // Round-trip check; also warms the render cache for the new listing
+        return serializedItem != null && ItemCache.get(serializedItem) != null ? serializedItem : null;
+    }
+
+    private static Document newListing(UUID seller, Binary serializedItem, double price, long listedAt) {
+        return new Document()
+                .append("seller", seller.toString())
+                .append("item", serializedItem)
+                .append("price", price)
+                .append("listedAt", listedAt)
+                .append("expiresAt", listedAt + 7 * 24 * 60 * 60 * 1000); // 7 days
+    }
+
+    private void loadListingIndex() {
+        listingIndex.clear();
+        ListingCursor cursor = null;
+        List<Document> batch;
+        do {
+            batch = findActiveListingsAfter(ListingSort.OLDEST, cursor, INDEX_LOAD_BATCH_SIZE);
+            batch.forEach(listingIndex::load);
+            if (!batch.isEmpty()) {
+                cursor = ListingCursor.of(batch.getLast());
+            }
+        } while (batch.size() == INDEX_LOAD_BATCH_SIZE);
+    }
+
+    /**
+     * Keyset query over the sort's compound index: seeks straight to {@code after} instead of
+     * skipping, so the cost does not depend on how deep the page is.
+     */
+    private List<Document> findActiveListingsAfter(ListingSort sort, ListingCursor after, int limit) {
+        Bson filter = Filters.gt("expiresAt", System.currentTimeMillis());
+        if (after != null) {
+            filter = Filters.and(filter, after.after());
+        }
+        return listings.find(filter)
+                .sort(sort.sort())
+                .limit(limit)
+                .into(new ArrayList<>());
+    }
+
+    // Served from the in-memory index; browsing never hits the database.
+    public CompletableFuture<List<Document>> getActiveListings(ListingSort sort, ListingCursor after, int pageSize) {
+        return CompletableFuture.completedFuture(listingIndex.getPage(sort, after, pageSize));
     }
 
     public CompletableFuture<Integer> getActiveListingsCount() {
-        return CompletableFuture.supplyAsync(() -> (int) listings.countDocuments(Filters.gt("expiresAt", System.currentTimeMillis())));
+        return CompletableFuture.completedFuture(listingIndex.count());
+    }
+
+    /**
+     * Indexes the loaded listings for search in the background; listings added later are
+     * indexed as they arrive.
+     */
+    public CompletableFuture<Void> buildSearchIndex() {
+        return CompletableFuture.runAsync(searchIndex::rebuild, executors.maintenance());
     }
 
+    /**
+     * Finds active listings by material, display name or enchantment, cheapest first. Answered
+     * from memory.
+     */
+    public CompletableFuture<List<Document>> searchListings(String query, double minPrice, double maxPrice, int limit) {
+        return CompletableFuture.completedFuture(searchIndex.search(query, minPrice, maxPrice, limit));
+    }
+
+    /**
+     * @return The current black market selection, served from memory.
+     */
     public CompletableFuture<List<Document>> getBlackMarketListings() {
-        return CompletableFuture.supplyAsync(() -> {
-            List<Document> allListings = listings.find(Filters.gt("expiresAt", System.currentTimeMillis()))
-                    .limit(10)
-                    .into(new ArrayList<>());
-            Collections.shuffle(allListings);
-            return allListings;
-        });
+        return CompletableFuture.completedFuture(blackMarket.get());
+    }
+
+    /**
+     * Draws a new black market selection from the active listings.
+     */
+    public void rotateBlackMarket(int size) {
+        blackMarket.rotate(size);
+    }
+
+    /**
+     * Registers a callback for every black market rotation.
+     */
+    public void addBlackMarketListener(Runnable listener) {
+        blackMarket.addListener(listener);
     }
 
     public CompletableFuture<Void> removeListing(String listingId) {
-        return CompletableFuture.runAsync(() -> {
-            Document listing = listings.find(Filters.eq("_id", new ObjectId(listingId))).first();
+        return runTimed("removeListing", () -> {
+            Document listing = listings.findOneAndDelete(Filters.eq("_id", new ObjectId(listingId)));
             if (listing != null) {
-                UUID seller = UUID.fromString(listing.getString("seller"));
-                PlayerData playerData = getPlayerData(seller).join();
-                playerData.removeListing(listingId);
-                playerData.save(players);
-                listings.deleteOne(Filters.eq("_id", new ObjectId(listingId)));
+                PlayerData.removeListing(players, UUID.fromString(listing.getString("seller")), listingId);
+                listingIndex.remove(listingId, ListingChange.Type.REMOVED);
             }
-        });
+        }, executors.writes());
     }
 
-    public CompletableFuture<Void> addTransaction(UUID buyer, UUID seller, ItemStack item, double price, boolean isBlackMarket) {
-        return CompletableFuture.runAsync(() -> {
-            String serializedItem = ItemUtils.serializeItem(item);
-            PlayerData.Transaction transaction = new PlayerData.Transaction(
-                    buyer, seller, serializedItem, price, isBlackMarket, System.currentTimeMillis()
+    /**
+     * Atomically takes an active listing off the market so exactly one buyer can complete it.
+     *
+     * @param listingId The listing to claim.
+     * @return The claimed listing, or null if it was already sold, removed or expired.
+     */
+    public CompletableFuture<Document> claimListing(String listingId, UUID buyer) {
+        return supplyTimed("claimListing", () -> {
+            if (!ObjectId.isValid(listingId)) {
+                return null;
+            }
+            ObjectId objectId = new ObjectId(listingId);
+            long now = System.currentTimeMillis();
+            Bson claimable = Filters.and(
+                    Filters.eq("_id", objectId),
+                    Filters.gt("expiresAt", now),
+                    Filters.eq("reservedBy", buyer.toString())
             );
 
-            PlayerData buyerData = getPlayerData(buyer).join();
-            buyerData.addTransaction(transaction);
-            buyerData.save(players);
+            // The claim goes on disk with the full listing before anything is deleted, so a crash
+            // at any point after this can put the listing back
+            PurchaseJournal journal = purchaseJournal;
+            if (journal != null) {
+                Document intent = listings.find(claimable).first();
+                if (intent == null) {
+                    dropIfGone(objectId, now);
+                    return null;
+                }
+                journal.claimed(intent).join();
+            }
 
-            PlayerData sellerData = getPlayerData(seller).join();
-            sellerData.addTransaction(transaction);
-            sellerData.save(players);
-        });
+            Document listing = listings.findOneAndDelete(claimable);
+            if (listing == null) {
+                if (journal != null) {
+                    journal.cancelled(listingId);
+                }
+                dropIfGone(objectId, now);
+                return null;
+            }
+            listingIndex.remove(listingId, ListingChange.Type.SOLD);
+            PlayerData.removeListing(players, UUID.fromString(listing.getString("seller")), listingId);
+            return listing;
+        }, executors.writes());
     }
 
-    public CompletableFuture<PlayerData> getPlayerData(UUID player) {
-        return CompletableFuture.supplyAsync(() -> PlayerData.load(players, player));
+    // Lost the reservation to another buyer, or the listing is gone; only drop it from the index if gone
+    private void dropIfGone(ObjectId listingId, long now) {
+        if (listings.countDocuments(Filters.and(Filters.eq("_id", listingId), Filters.gt("expiresAt", now))) == 0) {
+            listingIndex.remove(listingId.toString(), ListingChange.Type.EXPIRED);
+        }
     }
 
-    public int getPlayerListingCount(UUID player) {
-        return (int) listings.countDocuments(Filters.and(
-                Filters.eq("seller", player.toString()),
-                Filters.gt("expiresAt", System.currentTimeMillis())
-        ));
+    /**
+     * Leases a listing to {@code buyer} while they confirm the purchase, so other buyers are
+     * turned away at once instead of racing to claim it. Only the holder can
+     * {@link #claimListing(String, UUID) claim} the listing. A lease lapses after
+     * {@link #RESERVATION_MILLIS}, after which anyone may take it over, so an abandoned one never
+     * blocks a listing for long.
+     *
+     * @return The listing, or null if it is gone, expired or reserved by someone else.
+     */
+    public CompletableFuture<Document> reserveListing(String listingId, UUID buyer) {
+        if (!ObjectId.isValid(listingId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ObjectId objectId = new ObjectId(listingId);
+        Reservation held = reservations.get(objectId);
+        if (held != null && !held.buyer().equals(buyer) && held.until() > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return supplyTimed("reserveListing", () -> {
+            long now = System.currentTimeMillis();
+            long until = now + RESERVATION_MILLIS;
+            Document listing = listings.findOneAndUpdate(
+                    Filters.and(
+                            Filters.eq("_id", objectId),
+                            Filters.gt("expiresAt", now),
+                            Filters.or(
+                                    Filters.exists("reservedUntil", false),
+                                    Filters.lte("reservedUntil", now),
+                                    Filters.eq("reservedBy", buyer.toString())
+                            )
+                    ),
+                    Updates.combine(
+                            Updates.set("reservedBy", buyer.toString()),
+                            Updates.set("reservedUntil", until)
+                    ),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+            );
+            if (listing != null) {
+                reservations.put(objectId, new Reservation(buyer, until));
+            }
+            return listing;
+        }, executors.writes());
     }
 
-    public void cleanupExpiredListings() {
-        listings.deleteMany(Filters.lte("expiresAt", System.currentTimeMillis()));
+    /**
+     * Gives up {@code buyer}'s lease on a listing, e.g. when they cancel the confirmation. Does
+     * nothing if someone else holds it by now.
+     */
+    public CompletableFuture<Void> releaseReservation(String listingId, UUID buyer) {
+        if (!ObjectId.isValid(listingId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ObjectId objectId = new ObjectId(listingId);
+        reservations.computeIfPresent(objectId, (id, held) -> held.buyer().equals(buyer) ? null : held);
+        return runTimed("releaseReservation", () -> listings.updateOne(
+                Filters.and(Filters.eq("_id", objectId), Filters.eq("reservedBy", buyer.toString())),
+                Updates.combine(Updates.unset("reservedBy"), Updates.unset("reservedUntil"))
+        ), executors.writes());
     }
 
-    public void cleanupInvalidListings() {
-        List<Document> invalidListings = new ArrayList<>();
-        for (Document listing : listings.find()) {
-            String itemData = listing.getString("item");
-            if (ItemUtils.deserializeItem(itemData) == null) {
-                invalidListings.add(listing);
+    /**
+     * Puts a previously claimed listing back on the market, e.g. when the buyer's payment fails.
+     *
+     * @param listing The document returned by {@link #claimListing(String, UUID)}.
+     */
+    public CompletableFuture<Void> restoreListing(Document listing) {
+        return runTimed("restoreListing", () -> {
+            restore(listing);
+            PurchaseJournal journal = purchaseJournal;
+            if (journal != null) {
+                journal.cancelled(listing.getObjectId("_id").toString());
             }
+        }, executors.writes());
+    }
+
+    /**
+     * Inserts the listing only if no listing with its {@code _id} exists, so one that was never
+     * deleted keeps any changes made since it was journaled.
+     *
+     * @return True if the listing was missing and has been put back.
+     */
+    private boolean restoreIfMissing(Document listing) {
+        listing.remove("reservedBy");
+        listing.remove("reservedUntil");
+        Document fields = new Document(listing);
+        fields.remove("_id");
+        UpdateResult result = listings.updateOne(Filters.eq("_id", listing.getObjectId("_id")),
+                Updates.setOnInsert(fields), new UpdateOptions().upsert(true));
+        if (result.getUpsertedId() == null) {
+            return false;
         }
+        listingIndex.put(listing);
+        PlayerData.addListing(players, UUID.fromString(listing.getString("seller")), listing.getObjectId("_id").toString());
+        return true;
+    }
+
+    private void restore(Document listing) {
+        listing.remove("reservedBy");
+        listing.remove("reservedUntil");
+        listings.replaceOne(Filters.eq("_id", listing.getObjectId("_id")), listing, new ReplaceOptions().upsert(true));
+        if (listingIndex.get(listing.getObjectId("_id")) == null) {
+            listingIndex.put(listing);
+        }
+        PlayerData.addListing(players, UUID.fromString(listing.getString("seller")), listing.getObjectId("_id").toString());
+    }
+
+    /**
+     * Finishes whatever an earlier run left in the purchase journal, then opens it for new
+     * purchases. Call after {@link #connect()} and before the marketplace opens.
+     * <p>
+     * Journaled transactions are applied again, which is harmless since they are keyed by
+     * {@code _id}. A claim that never journaled a completion or cancellation may have been
+     * interrupted before or after its listing was deleted; the listing is put back if it is
+     * missing, logged for review, and otherwise left as it is.
+     */
+    public void openPurchaseJournal(Path path, Logger logger) throws IOException {
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(PurchaseJournal.read(path, logger));
+        if (!recovery.transactions().isEmpty()) {
+            applyTransactions(recovery.transactions());
+            logger.info("Recovered " + recovery.transactions().size() + " purchase(s) from the journal");
+        }
+        for (Document listing : recovery.listings()) {
+            if (restoreIfMissing(listing)) {
+                logger.warning("Restored listing " + listing.getObjectId("_id") + " from an interrupted purchase by seller "
+                        + listing.getString("seller"));
+            }
+        }
+        purchaseJournal = new PurchaseJournal(path, logger, executors.writes(), this::applyTransactions);
+    }
+
+    /**
+     * Records a purchase as final. Wait for the future before paying the seller or handing over
+     * the item: once it completes the transaction is durable in the purchase journal, and
+     * recovery will not put the listing back. It reaches MongoDB with the journal's next bulk
+     * apply. If it fails, the purchase did not happen and the listing should be restored.
+     *
+     * @param listing The document returned by {@link #claimListing(String, UUID)}; its stored item is
+     *                reused as is.
+     * @param item    The purchased item; its name is kept with the trade in case the stored item
+     *                stops decoding.
+     */
+    public CompletableFuture<Void> recordPurchase(Document listing, UUID buyer, ItemStack item, double price, boolean isBlackMarket) {
+        Document transaction = new Document("_id", new ObjectId());
+        transaction.putAll(new PlayerData.Transaction(buyer, UUID.fromString(listing.getString("seller")),
+                listing.get("item"), item.getType().name(), price, isBlackMarket, System.currentTimeMillis()).toDocument());
+
+        PurchaseJournal journal = purchaseJournal;
+        if (journal == null) {
+            return runTimed("recordPurchase", () -> transactions.insertOne(transaction), executors.writes());
+        }
+        return journal.completed(listing.getObjectId("_id").toString(), transaction);
+    }
 
-        for (Document listing : invalidListings) {
-            String listingId = listing.getObjectId("_id").toString();
-            UUID seller = UUID.fromString(listing.getString("seller"));
-            PlayerData playerData = getPlayerData(seller).join();
-            playerData.removeListing(listingId);
-            playerData.save(players);
-            listings.deleteOne(Filters.eq("_id", listing.getObjectId("_id")));
+    private void applyTransactions(List<Document> batch) {
+        List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+        for (Document transaction : batch) {
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", transaction.get("_id")), transaction,
+                    new ReplaceOptions().upsert(true)));
         }
+        operationLatency("applyTransactions").time(() -> transactions.bulkWrite(writes, new BulkWriteOptions().ordered(false)));
+    }
+
+    /**
+     * Converts listings and transactions still stored in the legacy Base64 item format to the
+     * compact binary format in the background. Both formats stay readable throughout.
+     */
+    public CompletableFuture<List<ItemFormatMigration.Result>> migrateItemFormat() {
+        return supplyTimed("migrateItemFormat", () -> List.of(
+                new ItemFormatMigration("listings", listings, listingIndex::replace).run(),
+                new ItemFormatMigration("transactions", transactions, doc -> {}).run()
+        ), executors.maintenance());
+    }
+
+    /**
+     * Removes listings whose items no longer deserialize, in the background. See
+     * {@link ListingValidationJob} for how it is throttled and checkpointed.
+     *
+     * @param serverVersion Identifies the running server, so a version change triggers a full pass.
+     */
+    public CompletableFuture<ListingValidationJob.Result> validateListings(String serverVersion, Logger logger) {
+        ListingValidationJob job = new ListingValidationJob(listings, players, meta,
+                listingId -> listingIndex.remove(listingId, ListingChange.Type.REMOVED),
+                serverVersion, executors.codec(), logger);
+        validationJob = job;
+        return supplyTimed("validateListings", job::run, executors.maintenance())
+                .whenComplete((result, ex) -> validationJob = null);
+    }
+
+    /**
+     * Moves trade history that older versions embedded in player documents into the
+     * {@code transactions} collection, in the background. Every trade was stored on both the
+     * buyer and the seller, so only the buyer's copy is kept, upserted on its natural key so a
+     * retry never duplicates. Each player is unset once copied, so an interrupted run resumes
+     * with the players it had not reached.
+     *
+     * @return The number of player documents migrated.
+     */
+    public CompletableFuture<Integer> migrateEmbeddedTransactions() {
+        return supplyTimed("migrateEmbeddedTransactions", this::moveEmbeddedTransactions, executors.maintenance());
+    }
+
+    private int moveEmbeddedTransactions() {
+        int migrated = 0;
+        for (Document playerDoc : players.find(Filters.exists("transactions"))) {
+            String playerId = playerDoc.getString("playerId");
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (Document transaction : playerDoc.getList("transactions", Document.class, List.of())) {
+                if (!playerId.equals(transaction.getString("buyer"))) {
+                    continue;
+                }
+                writes.add(new ReplaceOneModel<>(
+                        Filters.and(
+                                Filters.eq("buyer", transaction.getString("buyer")),
+                                Filters.eq("seller", transaction.getString("seller")),
+                                Filters.eq("timestamp", transaction.getLong("timestamp"))
+                        ),
+                        transaction,
+                        new ReplaceOptions().upsert(true)
+                ));
+            }
+            if (!writes.isEmpty()) {
+                transactions.bulkWrite(writes);
+            }
+            players.updateOne(Filters.eq("_id", playerDoc.get("_id")), Updates.unset("transactions"));
+            migrated++;
+        }
+        return migrated;
+    }
+
+    /**
+     * Registers a callback for every listing that is added to or removed from the marketplace.
+     */
+    public void addListingListener(Consumer<ListingChange> listener) {
+        listingIndex.addListener(listener);
+    }
+
+    /**
+     * Looks up a player's name, first in the {@code players} collection and then in the server's
+     * own profile cache, which may touch disk. The latter result is stored for next time.
+     */
+    public CompletableFuture<String> resolvePlayerName(UUID playerId) {
+        return supplyTimed("resolvePlayerName", () -> {
+            String name = PlayerData.loadName(players, playerId);
+            if (name == null) {
+                name = Bukkit.getOfflinePlayer(playerId).getName();
+                if (name != null) {
+                    updatePlayerName(playerId, name);
+                }
+            }
+            return name;
+        }, executors.reads());
+    }
+
+    public CompletableFuture<Void> updatePlayerName(UUID playerId, String name) {
+        return runTimed("updatePlayerName", () -> PlayerData.setName(players, playerId, name), executors.writes());
+    }
+
+    /**
+     * Keeps items for a player who is offline until {@link #takePendingItems(UUID)} hands them
+     * over on their next join. Items are serialized on a write worker.
+     *
+     * @return The items that could not be serialized and were not kept.
+     */
+    public CompletableFuture<List<ItemStack>> returnItemsLater(UUID playerId, List<ItemStack> items) {
+        return supplyTimed("returnItemsLater", () -> {
+            List<Binary> serialized = new ArrayList<>(items.size());
+            List<ItemStack> unstored = new ArrayList<>();
+            for (ItemStack item : items) {
+                Binary data = ItemUtils.serializeItem(item);
+                if (data != null) {
+                    serialized.add(data);
+                } else {
+                    unstored.add(item);
+                }
+            }
+            if (!serialized.isEmpty()) {
+                PlayerData.addPendingItems(players, playerId, serialized);
+            }
+            return unstored;
+        }, executors.writes());
+    }
+
+    /**
+     * Removes the items kept for a player by {@link #returnItemsLater(UUID, List)}. Items that no
+     * longer deserialize are put back rather than lost.
+     */
+    public CompletableFuture<List<ItemStack>> takePendingItems(UUID playerId) {
+        return supplyTimed("takePendingItems", () -> {
+            List<ItemStack> items = new ArrayList<>();
+            List<Binary> undecodable = new ArrayList<>();
+            for (Binary data : PlayerData.takePendingItems(players, playerId)) {
+                ItemStack item = ItemUtils.deserializeItem(data);
+                if (item != null) {
+                    items.add(item);
+                } else {
+                    undecodable.add(data);
+                }
+            }
+            if (!undecodable.isEmpty()) {
+                PlayerData.addPendingItems(players, playerId, undecodable);
+            }
+            return items;
+        }, executors.writes());
+    }
+
+    public MongoExecutors getExecutors() {
+        return executors;
+    }
+
+    /**
+     * Atomically claims up to {@code wanted} of the seller's remaining listing slots, so listings
+     * still being stored count towards {@code max}. Safe to call on the main thread.
+     *
+     * @return The number of slots claimed; release them with {@link #releaseListingSlots(UUID, int)}
+     * once the listings are stored or rolled back.
+     */
+    public int reserveListingSlots(UUID seller, int wanted, int max) {
+        return listingIndex.reserveSlots(seller, wanted, max);
+    }
+
+    public void releaseListingSlots(UUID seller, int slots) {
+        listingIndex.releaseSlots(seller, slots);
+    }
+
+    /**
+     * Deletes up to {@code batchSize} expired listings, taking the earliest deadlines first, and
+     * removes them from their sellers and the listing index.
+     *
+     * @return The number of listings expired; equal to {@code batchSize} if more may be waiting.
+     */
+    public CompletableFuture<Integer> expireListings(int batchSize) {
+        return supplyTimed("expireListings", () -> {
+            long now = System.currentTimeMillis();
+            List<Document> expired = listings.find(Filters.lte("expiresAt", now))
+                    .projection(Projections.include("_id", "seller"))
+                    .sort(Sorts.ascending("expiresAt"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (expired.isEmpty()) {
+                listingIndex.removeExpired(now);
+                return 0;
+            }
+
+            List<ObjectId> ids = new ArrayList<>(expired.size());
+            Map<String, List<String>> idsBySeller = new HashMap<>();
+            for (Document listing : expired) {
+                ids.add(listing.getObjectId("_id"));
+                idsBySeller.computeIfAbsent(listing.getString("seller"), seller -> new ArrayList<>())
+                        .add(listing.getObjectId("_id").toString());
+            }
+
+            listings.deleteMany(Filters.in("_id", ids));
+
+            List<WriteModel<Document>> sellerUpdates = new ArrayList<>(idsBySeller.size());
+            idsBySeller.forEach((seller, sellerListings) -> sellerUpdates.add(new UpdateOneModel<>(
+                    Filters.eq("playerId", seller),
+                    Updates.pullAll("activeListings", sellerListings)
+            )));
+            players.bulkWrite(sellerUpdates, new BulkWriteOptions().ordered(false));
+
+            for (ObjectId id : ids) {
+                listingIndex.remove(id.toString(), ListingChange.Type.EXPIRED);
+            }
+            if (expired.size() < batchSize) {
+                // Also drop anything still indexed that is already gone from the collection
+                listingIndex.removeExpired(now);
+            }
+            return expired.size();
+        }, executors.writes());
+    }
+
+    /**
+     * @return When the next indexed listing expires, or {@link Long#MAX_VALUE} if none are indexed.
+     */
+    public long getNextExpiry() {
+        return listingIndex.nextExpiry();
+    }
+
+    /**
+     * Reads one page of a player's trade history, newest first. The query seeks straight to
+     * {@code after} over the {@code (buyer, timestamp, _id)} / {@code (seller, timestamp, _id)}
+     * indexes instead of skipping, so deep pages cost the same as the first.
+     *
+     * @param after The last transaction of the previous page, or null for the first page.
+     * @param limit Maximum number of transactions to return.
+     */
+    public CompletableFuture<TransactionPage> getTransactions(@NotNull UUID playerId, TransactionRole role, TransactionCursor after, int limit) {
+        return supplyTimed("getTransactions", () -> {
+            List<Document> docs = transactions.find(transactionFilter(playerId, role, after))
+                    .sort(TRANSACTION_ORDER)
+                    .limit(limit)
+                    .into(new ArrayList<>());
+            return new TransactionPage(docs.stream().map(PlayerData.Transaction::fromDocument).toList(),
+                    docs.isEmpty() ? null : TransactionCursor.of(docs.getLast()));
+        }, executors.reads());
+    }
+
+    /**
+     * Finds where each of the next {@code pages} history pages after {@code after} ends, for
+     * jumping ahead without loading the pages in between. Only {@code timestamp} and {@code _id}
+     * are read, so the scan stays within the index.
+     *
+     * @return The cursor of the last transaction on each page, in order; shorter than
+     * {@code pages} if the history runs out.
+     */
+    public CompletableFuture<List<TransactionCursor>> getTransactionPageEnds(@NotNull UUID playerId, TransactionRole role,
+                                                                             TransactionCursor after, int pageSize, int pages) {
+        return supplyTimed("getTransactionPageEnds", () -> {
+            List<TransactionCursor> ends = new ArrayList<>(pages);
+            int seen = 0;
+            for (Document doc : transactions.find(transactionFilter(playerId, role, after))
+                    .projection(Projections.include("_id", "timestamp"))
+                    .sort(TRANSACTION_ORDER)
+                    .limit(pageSize * pages)) {
+                if (++seen % pageSize == 0) {
+                    ends.add(TransactionCursor.of(doc));
+                }
+            }
+            return ends;
+        }, executors.reads());
+    }
+
+    private static Bson transactionFilter(UUID playerId, TransactionRole role, TransactionCursor after) {
+        return after == null ? role.filter(playerId) : Filters.and(role.filter(playerId), after.after());
+    }
+
+    public CompletableFuture<Integer> countTransactions(@NotNull UUID playerId, TransactionRole role) {
+        return supplyTimed("countTransactions", () -> (int) transactions.countDocuments(role.filter(playerId)), executors.reads());
     }
 
     public CompletableFuture<List<Document>> getTransactions(@NotNull UUID uniqueId) {
-        return CompletableFuture.supplyAsync(() -> {
-            PlayerData playerData = getPlayerData(uniqueId).join();
-            List<PlayerData.Transaction> transactionsList = playerData.getTransactions();
+        return supplyTimed("getTransactions", () -> {
             List<Document> transactionDocuments = new ArrayList<>();
 
-            for (PlayerData.Transaction transaction : transactionsList) {
+            for (Document doc : transactions.find(TransactionRole.ANY.filter(uniqueId)).sort(TRANSACTION_ORDER)) {
+                PlayerData.Transaction transaction = PlayerData.Transaction.fromDocument(doc);
                 // Deserialize the item from the transaction
-                String serializedItem = transaction.getSerializedItem();
-                ItemStack itemStack = serializedItem != null ? ItemUtils.deserializeItem(serializedItem) : null;
-                String itemName = "Unknown Item";
+                Object serializedItem = transaction.getSerializedItem();
+                ItemStack itemStack = serializedItem != null ? ItemCache.get(serializedItem) : null;
+                String itemName;
                 if (itemStack != null) {
                     ItemMeta meta = itemStack.getItemMeta();
                     itemName = (meta != null && meta.hasDisplayName()) ? meta.getDisplayName() : itemStack.getType().name();
+                } else {
+                    itemName = transaction.getItemName();
                 }
 
                 Document transactionDoc = new Document()
@@ -197,15 +804,12 @@ public class MongoManager {
                 transactionDocuments.add(transactionDoc);
             }
 
-            // Sort by timestamp (newest first)
-            transactionDocuments.sort((doc1, doc2) -> Long.compare(doc2.getLong("timestamp"), doc1.getLong("timestamp")));
-
             return transactionDocuments;
-        });
+        }, executors.reads());
     }
 
     public CompletableFuture<List<Document>> getListingsByPlayer(@NotNull UUID uniqueId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyTimed("getListingsByPlayer", () -> {
             List<Document> playerListings = new ArrayList<>();
             String uuidString = uniqueId.toString();
 
@@ -220,17 +824,43 @@ public class MongoManager {
             }
 
             return playerListings;
-        });
+        }, executors.reads());
     }
 
     public CompletableFuture<Document> getListingById(String listingId) {
-        return CompletableFuture.supplyAsync(() -> {
+        Document cached = listingIndex.get(listingId);
+        if (cached != null && cached.getLong("expiresAt") > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return supplyTimed("getListingById", () -> {
             try {
                 ObjectId objectId = new ObjectId(listingId);
-                return listings.find(new Document("_id", objectId)).first();
+                return listings.find(Filters.and(
+                        Filters.eq("_id", objectId),
+                        Filters.gt("expiresAt", System.currentTimeMillis())
+                )).first();
             } catch (IllegalArgumentException e) {
                 return null;
             }
-        });
+        }, executors.reads());
+    }
+
+    /**
+     * Runs a blocking driver call on {@code executor}, recording how long it ran (not how long it
+     * queued) under {@code operation}.
+     */
+    private <T> CompletableFuture<T> supplyTimed(String operation, Supplier<T> task, Executor executor) {
+        Histogram latency = operationLatency(operation);
+        return CompletableFuture.supplyAsync(() -> latency.time(task), executor);
+    }
+
+    private CompletableFuture<Void> runTimed(String operation, Runnable task, Executor executor) {
+        Histogram latency = operationLatency(operation);
+        return CompletableFuture.runAsync(() -> latency.time(task), executor);
+    }
+
+    private static Histogram operationLatency(String operation) {
+        return Metrics.histogram(OPERATION_LATENCY, "Time spent in MongoManager operations, by method.", "operation", operation);
     }
 }
\ No newline at end of file
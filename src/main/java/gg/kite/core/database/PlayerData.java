@@ -2,28 +2,39 @@ package gg.kite.core.database;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
-import gg.kite.core.utils.ItemUtils;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import gg.kite.core.utils.ItemCache;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Per-player document in the {@code players} collection.
+ * <p>
+ * Trade history is not embedded here; each {@link Transaction} is its own document in the
+ * {@code transactions} collection so player documents stay small. Changes are written with
+ * targeted update operators rather than by replacing the whole document, so each one is a single
+ * round-trip and concurrent changes to the same player cannot overwrite each other.
+ */
 public class PlayerData {
     private final UUID playerId;
-    private final List<Transaction> transactions;
     private final List<String> activeListings;
 
     public PlayerData(UUID playerId) {
         this.playerId = playerId;
-        this.transactions = new ArrayList<>();
         this.activeListings = new ArrayList<>();
     }
 
-    public PlayerData(UUID playerId, List<Transaction> transactions, List<String> activeListings) {
+    public PlayerData(UUID playerId, List<String> activeListings) {
         this.playerId = playerId;
-        this.transactions = transactions != null ? transactions : new ArrayList<>();
         this.activeListings = activeListings != null ? activeListings : new ArrayList<>();
     }
 
@@ -31,49 +42,20 @@ public class PlayerData {
         return playerId;
     }
 
-    public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions);
-    }
-
     public List<String> getActiveListings() {
         return new ArrayList<>(activeListings);
     }
 
-    public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
-    }
-
-    public void addListing(String listingId) {
-        activeListings.add(listingId);
-    }
-
-    public void removeListing(String listingId) {
-        activeListings.remove(listingId);
-    }
-
     public Document toDocument() {
-        List<Document> transactionDocs = new ArrayList<>();
-        for (Transaction transaction : transactions) {
-            transactionDocs.add(transaction.toDocument());
-        }
-
         return new Document()
                 .append("playerId", playerId.toString())
-                .append("transactions", transactionDocs)
                 .append("activeListings", activeListings);
     }
 
     public static PlayerData fromDocument(Document doc) {
         UUID playerId = UUID.fromString(doc.getString("playerId"));
-        List<Document> transactionDocs = doc.getList("transactions", Document.class);
         List<String> activeListings = doc.getList("activeListings", String.class);
-        List<Transaction> transactions = new ArrayList<>();
-
-        for (Document transactionDoc : transactionDocs) {
-            transactions.add(Transaction.fromDocument(transactionDoc));
-        }
-
-        return new PlayerData(playerId, transactions, activeListings);
+        return new PlayerData(playerId, activeListings);
     }
 
     public static PlayerData load(MongoCollection<Document> collection, UUID playerId) {
@@ -81,26 +63,92 @@ public class PlayerData {
         return doc != null ? fromDocument(doc) : new PlayerData(playerId);
     }
 
-    public void save(MongoCollection<Document> collection) {
-        collection.replaceOne(
+    /**
+     * @return The last name stored for the player, or null if none was recorded.
+     */
+    public static String loadName(MongoCollection<Document> collection, UUID playerId) {
+        Document doc = collection.find(Filters.eq("playerId", playerId.toString()))
+                .projection(Projections.include("name"))
+                .first();
+        return doc != null ? doc.getString("name") : null;
+    }
+
+    public static void setName(MongoCollection<Document> collection, UUID playerId, String name) {
+        collection.updateOne(
+                Filters.eq("playerId", playerId.toString()),
+                Updates.set("name", name),
+                new UpdateOptions().upsert(true)
+        );
+    }
+
+    public static void addListing(MongoCollection<Document> collection, UUID playerId, String listingId) {
+        collection.updateOne(
                 Filters.eq("playerId", playerId.toString()),
-                toDocument(),
-                new com.mongodb.client.model.ReplaceOptions().upsert(true)
+                Updates.addToSet("activeListings", listingId),
+                new UpdateOptions().upsert(true)
         );
     }
 
+    public static void addListings(MongoCollection<Document> collection, UUID playerId, Collection<String> listingIds) {
+        collection.updateOne(
+                Filters.eq("playerId", playerId.toString()),
+                Updates.addEachToSet("activeListings", new ArrayList<>(listingIds)),
+                new UpdateOptions().upsert(true)
+        );
+    }
+
+    public static void removeListing(MongoCollection<Document> collection, UUID playerId, String listingId) {
+        collection.updateOne(
+                Filters.eq("playerId", playerId.toString()),
+                Updates.pull("activeListings", listingId)
+        );
+    }
+
+    /**
+     * Queues items to hand to the player the next time they join, e.g. items returned from a
+     * failed listing after they logged off.
+     */
+    public static void addPendingItems(MongoCollection<Document> collection, UUID playerId, List<Binary> items) {
+        collection.updateOne(
+                Filters.eq("playerId", playerId.toString()),
+                Updates.pushEach("pendingItems", items),
+                new UpdateOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Removes and returns the items queued for the player in one atomic step, so each item is
+     * handed over at most once.
+     */
+    public static List<Binary> takePendingItems(MongoCollection<Document> collection, UUID playerId) {
+        Document doc = collection.findOneAndUpdate(
+                Filters.and(Filters.eq("playerId", playerId.toString()), Filters.exists("pendingItems")),
+                Updates.unset("pendingItems"),
+                new FindOneAndUpdateOptions().projection(Projections.include("pendingItems"))
+        );
+        return doc != null ? doc.getList("pendingItems", Binary.class, List.of()) : List.of();
+    }
+
     public static class Transaction {
+        public static final String UNKNOWN_ITEM = "Unknown Item";
+
         private final UUID buyer;
         private final UUID seller;
-        private final String serializedItem;
+        private final Object serializedItem;
+        private final String itemName;
         private final double price;
         private final boolean isBlackMarket;
         private final long timestamp;
 
-        public Transaction(UUID buyer, UUID seller, String serializedItem, double price, boolean isBlackMarket, long timestamp) {
+        /**
+         * @param itemName The item's material name at the time of the trade, shown if the stored
+         *                 item stops decoding; null if unknown.
+         */
+        public Transaction(UUID buyer, UUID seller, Object serializedItem, String itemName, double price, boolean isBlackMarket, long timestamp) {
             this.buyer = buyer;
             this.seller = seller;
             this.serializedItem = serializedItem;
+            this.itemName = itemName;
             this.price = price;
             this.isBlackMarket = isBlackMarket;
             this.timestamp = timestamp;
@@ -115,13 +163,25 @@ public class PlayerData {
         }
 
         public ItemStack getItem() {
-            return serializedItem != null ? ItemUtils.deserializeItem(serializedItem) : null;
+            return ItemCache.get(serializedItem);
         }
 
-        public String getSerializedItem() {
+        public Object getSerializedItem() {
             return serializedItem;
         }
 
+        /**
+         * @return The material name of the decoded item, or the name recorded with the trade if the
+         * stored item no longer decodes, or {@link #UNKNOWN_ITEM}.
+         */
+        public String getItemName() {
+            ItemStack item = getItem();
+            if (item != null) {
+                return item.getType().name();
+            }
+            return itemName != null ? itemName : UNKNOWN_ITEM;
+        }
+
         public double getPrice() {
             return price;
         }
@@ -135,20 +195,25 @@ public class PlayerData {
         }
 
         public Document toDocument() {
-            return new Document()
+            Document doc = new Document()
                     .append("buyer", buyer.toString())
                     .append("seller", seller.toString())
                     .append("item", serializedItem)
                     .append("price", price)
                     .append("isBlackMarket", isBlackMarket)
                     .append("timestamp", timestamp);
+            if (itemName != null) {
+                doc.append("itemName", itemName);
+            }
+            return doc;
         }
 
         public static Transaction fromDocument(Document doc) {
             return new Transaction(
                     UUID.fromString(doc.getString("buyer")),
                     UUID.fromString(doc.getString("seller")),
-                    doc.getString("item"),
+                    doc.get("item"),
+                    doc.getString("itemName"),
                     doc.getDouble("price"),
                     doc.getBoolean("isBlackMarket", false),
                     doc.getLong("timestamp")
@@ -0,0 +1,386 @@
+package gg.kite.core.database;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of purchases, so a trade survives a crash between the listing claim and
+ * its transaction reaching MongoDB.
+ * <p>
+ * Each purchase writes a {@code claimed} record with the full listing before the listing is
+ * taken off the market, then either {@code completed} with the transaction, or {@code cancelled}
+ * if the claim lost or the listing was put back. {@code completed} is synced before the seller is
+ * paid or the item handed over and is final: recovery never puts that listing back. Only a
+ * purchase abandoned before that point is cancelled. Completed transactions are applied to
+ * MongoDB in bulk, one batch at a time, after which an {@code applied} record marks them done. A
+ * batch that fails to apply stays queued and is retried with exponential backoff.
+ * <p>
+ * Callers only enqueue. A single writer thread appends everything queued with one write and one
+ * {@code fsync} (group commit), then completes the callers' futures. Records are framed as
+ * length, CRC32 and BSON bytes, so a torn write at the tail is detected and ignored when reading.
+ * The file is truncated whenever every purchase in it is resolved and applied and it has grown
+ * past {@link #COMPACT_THRESHOLD_BYTES}.
+ */
+public class PurchaseJournal {
+    private static final String CLAIMED = "claimed";
+    private static final String COMPLETED = "completed";
+    private static final String CANCELLED = "cancelled";
+    private static final String APPLIED = "applied";
+    private static final int HEADER_BYTES = 8;
+    private static final long COMPACT_THRESHOLD_BYTES = 16L * 1024 * 1024;
+    private static final long MIN_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final FileChannel channel;
+    private final Logger logger;
+    private final Executor applyExecutor;
+    private final Consumer<List<Document>> applier;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // Listing ids still in flight; only touched by the writer thread
+    private final Set<String> unresolved = new HashSet<>();
+    private final Set<String> unapplied = new HashSet<>();
+    // Completed records waiting for the next apply, oldest first; only touched by the writer thread
+    private final List<Document> toApply = new ArrayList<>();
+    // Outcome of the apply in flight, handed back to the writer thread
+    private final Queue<ApplyResult> applyResults = new ConcurrentLinkedQueue<>();
+    private boolean applying;
+    private long retryDelayNanos;
+    private long nextApplyAt;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private record Pending(Document record, CompletableFuture<Void> durable) {
+    }
+
+    private record ApplyResult(List<Document> records, Throwable failure) {
+    }
+
+    /**
+     * What a journal left behind by an earlier run still needs done.
+     *
+     * @param transactions Completed transactions that may not have reached MongoDB.
+     * @param listings     Listings claimed by a purchase that was never completed or cancelled.
+     *                     The purchase was interrupted before or after deleting the listing, so
+     *                     the listing may still be on the market.
+     */
+    public record Recovery(List<Document> transactions, List<Document> listings) {
+
+        public static Recovery of(List<Document> records) {
+            Map<String, Document> claimed = new LinkedHashMap<>();
+            Map<String, Document> completed = new LinkedHashMap<>();
+            for (Document record : records) {
+                String listingId = record.getString("listingId");
+                switch (record.getString("type")) {
+                    case CLAIMED -> claimed.put(listingId, record.get("listing", Document.class));
+                    case COMPLETED -> {
+                        claimed.remove(listingId);
+                        completed.put(listingId, record.get("transaction", Document.class));
+                    }
+                    case CANCELLED -> {
+                        // Follows a completion only if that record's write failed, before any payment
+                        claimed.remove(listingId);
+                        completed.remove(listingId);
+                    }
+                    case APPLIED -> record.getList("listingIds", String.class).forEach(completed::remove);
+                    default -> {
+                    }
+                }
+            }
+            return new Recovery(new ArrayList<>(completed.values()), new ArrayList<>(claimed.values()));
+        }
+
+        public boolean isEmpty() {
+            return transactions.isEmpty() && listings.isEmpty();
+        }
+    }
+
+    /**
+     * Opens the journal for appending, discarding its previous contents, so {@link #read} it and
+     * recover first.
+     *
+     * @param applyExecutor Where {@code applier} runs, off the writer thread.
+     * @param applier       Writes a batch of completed transactions to MongoDB idempotently.
+     */
+    public PurchaseJournal(Path path, Logger logger, Executor applyExecutor, Consumer<List<Document>> applier) throws IOException {
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.logger = logger;
+        this.applyExecutor = applyExecutor;
+        this.applier = applier;
+        this.writer = Thread.ofPlatform().name("marketplace-journal").daemon().unstarted(this::run);
+        writer.start();
+    }
+
+    /**
+     * Reads every intact record at {@code path} in order, stopping at the first torn or corrupt
+     * one. A missing file reads as empty.
+     */
+    public static List<Document> read(Path path, Logger logger) throws IOException {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Document> records = new ArrayList<>();
+        while (data.remaining() >= HEADER_BYTES) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                data.position(start);
+                break;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            if (checksum(payload) != checksum) {
+                data.position(start);
+                break;
+            }
+            records.add(CODEC.decode(new BsonBinaryReader(ByteBuffer.wrap(payload)), DecoderContext.builder().build()));
+        }
+        if (data.hasRemaining()) {
+            logger.warning("Ignored " + data.remaining() + " byte(s) at the end of the purchase journal");
+        }
+        return records;
+    }
+
+    /**
+     * Records that a listing is about to be taken off the market for a purchase. Follow it with
+     * {@link #cancelled(String)} if the listing turns out not to be taken.
+     *
+     * @return Completes once the record is on disk.
+     */
+    public CompletableFuture<Void> claimed(Document listing) {
+        return append(new Document("type", CLAIMED)
+                .append("listingId", listing.getObjectId("_id").toString())
+                .append("listing", listing));
+    }
+
+    /**
+     * Records a purchase as final, before its payment. The transaction is applied to MongoDB with
+     * the next batch.
+     *
+     * @param transaction The transaction document, with an {@code _id} so applying it is idempotent.
+     * @return Completes once the record is on disk.
+     */
+    public CompletableFuture<Void> completed(String listingId, Document transaction) {
+        return append(new Document("type", COMPLETED)
+                .append("listingId", listingId)
+                .append("transaction", transaction));
+    }
+
+    /**
+     * Records that a claimed listing was not taken after all, or was put back on the market.
+     */
+    public CompletableFuture<Void> cancelled(String listingId) {
+        return append(new Document("type", CANCELLED).append("listingId", listingId));
+    }
+
+    /**
+     * Stops accepting records and gives the writer up to {@code timeout} to flush the rest.
+     * Transactions not yet marked applied, including any waiting for a retry, are applied again
+     * on the next start.
+     */
+    public void close(long timeout, TimeUnit unit) {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close the purchase journal: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> append(Document record) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Purchase journal is closed"));
+        }
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        queue.offer(new Pending(record, durable));
+        LockSupport.unpark(writer);
+        return durable;
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            collectApplyResults();
+            applyIfDue();
+            if (queue.isEmpty()) {
+                long wait = TimeUnit.SECONDS.toNanos(1);
+                if (!applying && !toApply.isEmpty()) {
+                    wait = Math.min(wait, nextApplyAt - System.nanoTime());
+                }
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                continue;
+            }
+
+            // Everything that queued up during the previous fsync goes out in this one
+            List<Pending> batch = new ArrayList<>();
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                batch.add(pending);
+            }
+
+            try {
+                write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to write the purchase journal", e);
+                batch.forEach(failed -> failed.durable().completeExceptionally(e));
+                continue;
+            }
+
+            toApply.addAll(track(batch));
+            batch.forEach(written -> written.durable().complete(null));
+            applyIfDue();
+            compactIfIdle();
+        }
+    }
+
+    private void write(List<Pending> batch) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        int size = 0;
+        for (Pending pending : batch) {
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            CODEC.encode(new BsonBinaryWriter(buffer), pending.record(), EncoderContext.builder().build());
+            byte[] payload = buffer.toByteArray();
+            payloads.add(payload);
+            size += HEADER_BYTES + payload.length;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        for (byte[] payload : payloads) {
+            frame.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        }
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * @return The {@code completed} records in this batch.
+     */
+    private List<Document> track(List<Pending> batch) {
+        List<Document> completed = new ArrayList<>();
+        for (Pending pending : batch) {
+            Document record = pending.record();
+            String listingId = record.getString("listingId");
+            switch (record.getString("type")) {
+                case CLAIMED -> unresolved.add(listingId);
+                case COMPLETED -> {
+                    unresolved.remove(listingId);
+                    unapplied.add(listingId);
+                    completed.add(record);
+                }
+                case CANCELLED -> unresolved.remove(listingId);
+                case APPLIED -> record.getList("listingIds", String.class).forEach(unapplied::remove);
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Hands everything waiting to the applier, unless an apply is already in flight or a failed
+     * one is still backing off.
+     */
+    private void applyIfDue() {
+        if (applying || toApply.isEmpty() || (retryDelayNanos > 0 && System.nanoTime() - nextApplyAt < 0)) {
+            return;
+        }
+
+        List<Document> completed = new ArrayList<>(toApply);
+        toApply.clear();
+        applying = true;
+        List<String> listingIds = completed.stream().map(record -> record.getString("listingId")).toList();
+        List<Document> transactions = completed.stream().map(record -> record.get("transaction", Document.class)).toList();
+        try {
+            CompletableFuture.runAsync(() -> applier.accept(transactions), applyExecutor).whenComplete((v, ex) -> {
+                if (ex == null) {
+                    append(new Document("type", APPLIED).append("listingIds", listingIds));
+                }
+                applyResults.offer(new ApplyResult(completed, ex));
+                LockSupport.unpark(writer);
+            });
+        } catch (RuntimeException e) {
+            // The executor refused the task, e.g. while shutting down
+            applyResults.offer(new ApplyResult(completed, e));
+        }
+    }
+
+    /**
+     * Requeues the records of a failed apply ahead of anything completed since, and backs off
+     * before the next attempt.
+     */
+    private void collectApplyResults() {
+        ApplyResult result;
+        while ((result = applyResults.poll()) != null) {
+            applying = false;
+            if (result.failure() == null) {
+                retryDelayNanos = 0;
+                continue;
+            }
+            retryDelayNanos = retryDelayNanos == 0 ? MIN_RETRY_NANOS : Math.min(retryDelayNanos * 2, MAX_RETRY_NANOS);
+            nextApplyAt = System.nanoTime() + retryDelayNanos;
+            toApply.addAll(0, result.records());
+            logger.warning("Failed to apply " + result.records().size() + " journaled purchase(s), retrying in "
+                    + TimeUnit.NANOSECONDS.toSeconds(retryDelayNanos) + "s: " + result.failure().getMessage());
+        }
+    }
+
+    private void compactIfIdle() {
+        try {
+            if (unresolved.isEmpty() && unapplied.isEmpty() && queue.isEmpty() && channel.size() > COMPACT_THRESHOLD_BYTES) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to compact the purchase journal: " + e.getMessage());
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package gg.kite.core.database;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Position of a transaction in newest-first history order: its timestamp, ties broken by
+ * {@code _id}.
+ * <p>
+ * History pages are fetched as "the next N transactions older than this cursor", a range seek
+ * over the {@code (buyer|seller, timestamp, _id)} indexes whose cost does not depend on the page.
+ */
+public record TransactionCursor(long timestamp, @NotNull ObjectId id) {
+
+    public static TransactionCursor of(Document transaction) {
+        return new TransactionCursor(transaction.getLong("timestamp"), transaction.getObjectId("_id"));
+    }
+
+    /**
+     * @return A filter matching every transaction that comes after this cursor, i.e. is older.
+     */
+    public Bson after() {
+        return Filters.or(
+                Filters.lt("timestamp", timestamp),
+                Filters.and(Filters.eq("timestamp", timestamp), Filters.lt("_id", id))
+        );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+package gg.kite.core.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * One page of a player's trade history, newest first.
+ *
+ * @param transactions The transactions on the page.
+ * @param last         Cursor of the last transaction on the page, where the next page starts, or
+ *                     null if the page is empty.
+ */
+public record TransactionPage(@NotNull List<PlayerData.Transaction> transactions, TransactionCursor last) {
+}
\ No newline at end of file
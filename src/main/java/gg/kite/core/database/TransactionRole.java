@@ -0,0 +1,24 @@
+package gg.kite.core.database;
+
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
+
+import java.util.UUID;
+
+/**
+ * Which side of a trade a transaction history query should match.
+ */
+public enum TransactionRole {
+    ANY,
+    BUYER,
+    SELLER;
+
+    public Bson filter(UUID playerId) {
+        String id = playerId.toString();
+        return switch (this) {
+            case BUYER -> Filters.eq("buyer", id);
+            case SELLER -> Filters.eq("seller", id);
+            case ANY -> Filters.or(Filters.eq("buyer", id), Filters.eq("seller", id));
+        };
+    }
+}
\ No newline at end of file
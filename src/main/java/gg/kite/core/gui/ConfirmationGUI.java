@@ -20,12 +20,24 @@ public class ConfirmationGUI implements Listener {
     private final Player player;
     private final Inventory inventory;
     private final Runnable onConfirm;
+    private final Runnable onCancel;
     private boolean isProcessed;
+    private boolean isConfirmed;
 
     public ConfirmationGUI(@NotNull Main plugin, @NotNull Player player, @NotNull ItemStack item, double price, Runnable onConfirm) {
+        this(plugin, player, item, price, onConfirm, null);
+    }
+
+    /**
+     * @param onCancel Runs once if the menu closes without the purchase being confirmed, whether
+     *                 through the cancel button or otherwise. May be null.
+     */
+    public ConfirmationGUI(@NotNull Main plugin, @NotNull Player player, @NotNull ItemStack item, double price,
+                           Runnable onConfirm, Runnable onCancel) {
         this.plugin = plugin;
         this.player = player;
         this.onConfirm = onConfirm;
+        this.onCancel = onCancel;
         this.isProcessed = false;
 
         this.inventory = Bukkit.createInventory(null, 27, "Confirm Purchase");
@@ -74,6 +86,7 @@ public class ConfirmationGUI implements Listener {
         int slot = event.getRawSlot();
         if (slot == 11) {
             isProcessed = true;
+            isConfirmed = true;
             onConfirm.run();
             player.closeInventory();
         } else if (slot == 15) {
@@ -91,5 +104,8 @@ public class ConfirmationGUI implements Listener {
         plugin.getLogger().info("Handling inventory close on thread: " + Thread.currentThread().getName());
         InventoryClickEvent.getHandlerList().unregister(this);
         InventoryCloseEvent.getHandlerList().unregister(this);
+        if (!isConfirmed && onCancel != null) {
+            onCancel.run();
+        }
     }
 }
\ No newline at end of file
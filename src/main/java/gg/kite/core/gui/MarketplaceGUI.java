@@ -1,39 +1,60 @@
 package gg.kite.core.gui;
 
 import gg.kite.core.Main;
+import gg.kite.core.database.ListingCursor;
+import gg.kite.core.database.ListingSort;
 import gg.kite.core.database.MongoManager;
 import gg.kite.core.utils.DiscordWebhook;
-import gg.kite.core.utils.ItemUtils;
+import gg.kite.core.utils.Histogram;
+import gg.kite.core.utils.ItemCache;
+import gg.kite.core.utils.Metrics;
+import gg.kite.core.utils.PlayerNameCache;
 import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
 import org.bson.Document;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MarketplaceGUI {
     private final Main plugin;
     private final MongoManager mongoManager;
     private final Economy economy;
     private final Map<UUID, InventoryInfo> openInventories;
+    private final PageCache pageCache = new PageCache();
+    // Players looking at each cached page; only touched on the main thread
+    private final Map<PageCache.Key, Set<UUID>> viewers = new HashMap<>();
+    // Sellers whose names changed since the last flush, with when they changed; flushed once per tick
+    private final Map<UUID, Long> renamedSellers = new ConcurrentHashMap<>();
+    private final AtomicBoolean renameFlushScheduled = new AtomicBoolean();
     private static final int ITEMS_PER_PAGE = 45;
+    public static final String RENDER_TIME = "marketplace_gui_render_seconds";
 
     private static class InventoryInfo {
         private final Inventory inventory;
         private final String title;
         private final boolean isBlackMarket;
-        private final int page;
+        private final ListingSort sort;
+        private final List<ListingCursor> pageCursors;
+        private final ListingCursor lastOnPage;
 
-        public InventoryInfo(Inventory inventory, String title, boolean isBlackMarket, int page) {
+        public InventoryInfo(Inventory inventory, String title, boolean isBlackMarket, ListingSort sort,
+                             List<ListingCursor> pageCursors, ListingCursor lastOnPage) {
             this.inventory = inventory;
             this.title = title;
             this.isBlackMarket = isBlackMarket;
-            this.page = page;
+            this.sort = sort;
+            this.pageCursors = pageCursors;
+            this.lastOnPage = lastOnPage;
         }
 
         public Inventory getInventory() {
@@ -48,8 +69,25 @@ public class MarketplaceGUI {
             return isBlackMarket;
         }
 
+        public ListingSort getSort() {
+            return sort;
+        }
+
         public int getPage() {
-            return page;
+            return pageCursors.size() + 1;
+        }
+
+        // Cursor of the last listing on each previous page; the current page starts after the last one
+        public List<ListingCursor> getPageCursors() {
+            return pageCursors;
+        }
+
+        public ListingCursor getLastOnPage() {
+            return lastOnPage;
+        }
+
+        public PageCache.Key getPageKey() {
+            return new PageCache.Key(isBlackMarket, sort, pageCursors.isEmpty() ? null : pageCursors.getLast());
         }
     }
 
@@ -57,103 +95,231 @@ public class MarketplaceGUI {
         this.plugin = plugin;
         this.mongoManager = mongoManager;
         this.economy = economy;
-        this.openInventories = new HashMap<>();
+        this.openInventories = new ConcurrentHashMap<>();
+        mongoManager.addListingListener(change -> refreshViewers(pageCache.invalidate(change)));
+        mongoManager.addBlackMarketListener(() -> refreshViewers(pageCache.invalidateBlackMarket()));
+        PlayerNameCache.addListener(this::onNameChanged);
     }
 
-    public void openMarketplace(Player player, boolean isBlackMarket, int page) {
-        CompletableFuture<List<Document>> listingsFuture = isBlackMarket
-                ? mongoManager.getBlackMarketListings()
-                : mongoManager.getActiveListings(page, ITEMS_PER_PAGE);
+    /**
+     * Queues the pages showing {@code seller} for a refresh. Names often resolve in bursts, e.g.
+     * every seller on a page at once, so changes are collected and handled once per tick.
+     */
+    private void onNameChanged(UUID seller) {
+        renamedSellers.put(seller, System.nanoTime());
+        if (plugin.isEnabled() && renameFlushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(plugin, this::flushRenamedSellers);
+        }
+    }
+
+    private void flushRenamedSellers() {
+        renameFlushScheduled.set(false);
+        Map<UUID, Long> changed = new HashMap<>();
+        for (UUID seller : renamedSellers.keySet()) {
+            Long changedAt = renamedSellers.remove(seller);
+            if (changedAt != null) {
+                changed.put(seller, changedAt);
+            }
+        }
+        if (!changed.isEmpty()) {
+            refreshViewers(pageCache.invalidateSellers(changed));
+        }
+    }
+
+    public void openMarketplace(Player player, boolean isBlackMarket) {
+        openMarketplace(player, isBlackMarket, ListingSort.OLDEST, new ArrayList<>());
+    }
+
+    private void openMarketplace(Player player, boolean isBlackMarket, ListingSort sort, List<ListingCursor> pageCursors) {
+        int page = pageCursors.size() + 1;
+        ListingCursor after = pageCursors.isEmpty() ? null : pageCursors.getLast();
+
+        CompletableFuture<PageCache.Page> pageFuture = pageCache.get(new PageCache.Key(isBlackMarket, sort, after), this::renderPage);
 
         CompletableFuture<Integer> countFuture = isBlackMarket
-                ? CompletableFuture.supplyAsync(() -> 10)
+                ? CompletableFuture.completedFuture(10)
                 : mongoManager.getActiveListingsCount();
 
-        CompletableFuture.allOf(listingsFuture, countFuture).thenAccept(v -> {
-            List<Document> listings = listingsFuture.join();
+        CompletableFuture.allOf(pageFuture, countFuture).thenAccept(v -> {
+            PageCache.Page rendered = pageFuture.join();
             int totalItems = countFuture.join();
-            int totalPages = isBlackMarket ? 1 : (int) Math.ceil((double) totalItems / ITEMS_PER_PAGE);
+            int totalPages = isBlackMarket ? 1 : Math.max(page, (int) Math.ceil((double) totalItems / ITEMS_PER_PAGE));
+            String title = (isBlackMarket ? "Black Market" : "Marketplace") + " (Page " + page + "/" + totalPages + ")";
 
-            String title = (isBlackMarket ? "Black Market" : "Marketplace") + " (Page " + page + ")";
-            Inventory inv = openInventories.containsKey(player.getUniqueId())
-                    ? openInventories.get(player.getUniqueId()).getInventory()
-                    : Bukkit.createInventory(null, 54, title);
-            InventoryInfo info = new InventoryInfo(inv, title, isBlackMarket, page);
-            openInventories.put(player.getUniqueId(), info);
-
-            inv.clear();
-
-            for (int i = 0; i < listings.size() && i < ITEMS_PER_PAGE; i++) {
-                Document listing = listings.get(i);
-                ItemStack item = ItemUtils.deserializeItem(listing.getString("item"));
-                if (item == null) {
-                    continue;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                long start = System.nanoTime();
+                InventoryInfo previous = openInventories.get(player.getUniqueId());
+                Inventory inv;
+                if (previous != null) {
+                    inv = previous.getInventory();
+                } else {
+                    MarketplaceHolder holder = new MarketplaceHolder();
+                    inv = Bukkit.createInventory(holder, 54, title);
+                    holder.setInventory(inv);
                 }
-                double price = listing.getDouble("price");
-                if (isBlackMarket) price *= 0.5; // 50% discount
-
-                ItemMeta meta = item.getItemMeta();
-                List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<>();
-                lore.add("§7Price: $" + String.format("%.2f", price));
-                lore.add("§7Seller: " + Bukkit.getOfflinePlayer(UUID.fromString(listing.getString("seller"))).getName());
-                lore.add("§7Listing ID: " + listing.get("_id").toString());
-                meta.setLore(lore);
-                item.setItemMeta(meta);
-
-                inv.setItem(i, item);
-            }
-
-            if (!isBlackMarket) {
-                if (page > 1) {
-                    ItemStack prev = new ItemStack(Material.ARROW);
-                    ItemMeta prevMeta = prev.getItemMeta();
-                    prevMeta.setDisplayName("§ePrevious Page");
-                    prev.setItemMeta(prevMeta);
-                    inv.setItem(45, prev);
+                ((MarketplaceHolder) inv.getHolder()).setPage(rendered);
+                InventoryInfo info = new InventoryInfo(inv, title, isBlackMarket, sort, pageCursors, rendered.lastOnPage());
+                openInventories.put(player.getUniqueId(), info);
+                if (previous != null) {
+                    removeViewer(previous.getPageKey(), player.getUniqueId());
                 }
-                if (page < totalPages) {
-                    ItemStack next = new ItemStack(Material.ARROW);
-                    ItemMeta nextMeta = next.getItemMeta();
-                    nextMeta.setDisplayName("§eNext Page");
-                    next.setItemMeta(nextMeta);
-                    inv.setItem(53, next);
+                viewers.computeIfAbsent(info.getPageKey(), key -> new HashSet<>()).add(player.getUniqueId());
+
+                inv.setContents(rendered.contents());
+                if (player.getOpenInventory().getTopInventory() != inv) {
+                    player.openInventory(inv);
                 }
+                Metrics.mainThread("gui_update").observeNanos(System.nanoTime() - start);
+            });
+        }).exceptionally(ex -> {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                player.sendMessage("§cError loading marketplace: " + ex.getMessage());
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Shows the cheapest listings matching a search in a one-off view. Results are a snapshot;
+     * buying one that has sold in the meantime fails like any other stale listing.
+     */
+    public void openSearch(Player player, String query, double minPrice, double maxPrice) {
+        mongoManager.searchListings(query, minPrice, maxPrice, ITEMS_PER_PAGE).thenAccept(results -> {
+            if (results.isEmpty()) {
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage("§eNo listings match \"" + query + "\"."));
+                return;
             }
 
-            Inventory finalInv = inv;
+            PageCache.Page page = renderTime("search").time(() -> buildPage(results, false, null, false));
             Bukkit.getScheduler().runTask(plugin, () -> {
-                if (player.getOpenInventory().getTopInventory() != finalInv) {
-                    player.openInventory(finalInv);
-                }
+                MarketplaceHolder holder = new MarketplaceHolder();
+                Inventory inv = Bukkit.createInventory(holder, 54, "Search: " + query + " (" + results.size() + ")");
+                holder.setInventory(inv);
+                holder.setPage(page);
+                inv.setContents(page.contents());
+                player.openInventory(inv);
             });
         }).exceptionally(ex -> {
             Bukkit.getScheduler().runTask(plugin, () -> {
-                player.sendMessage("§cError loading marketplace: " + ex.getMessage());
+                player.sendMessage("§cError searching the marketplace: " + ex.getMessage());
             });
             return null;
         });
     }
 
-    public void handlePurchase(Player buyer, String listingId) {
-        mongoManager.getActiveListings(1, Integer.MAX_VALUE).thenAccept(listings -> {
-            Document listing = listings.stream()
-                    .filter(doc -> doc.get("_id").toString().equals(listingId))
-                    .findFirst()
-                    .orElse(null);
+    private CompletableFuture<PageCache.Page> renderPage(PageCache.Key key) {
+        // One extra listing tells us whether a next page exists without a separate lookup
+        CompletableFuture<List<Document>> listingsFuture = key.isBlackMarket()
+                ? mongoManager.getBlackMarketListings()
+                : mongoManager.getActiveListings(key.sort(), key.after(), ITEMS_PER_PAGE + 1);
+
+        // Resolve the page's sellers as a batch first, so the page is cached with their names
+        return listingsFuture.thenCompose(listings -> PlayerNameCache.resolve(listings.stream()
+                        .limit(ITEMS_PER_PAGE)
+                        .map(listing -> UUID.fromString(listing.getString("seller")))
+                        .toList())
+                .thenApply(v -> renderTime(key.isBlackMarket() ? "blackmarket" : "marketplace")
+                        .time(() -> buildPage(listings, key.isBlackMarket(), key.isBlackMarket() ? null : key.sort(), key.after() != null))));
+    }
+
+    private static Histogram renderTime(String view) {
+        return Metrics.histogram(RENDER_TIME, "Time to render a GUI page, by view.", "view", view);
+    }
+
+    /**
+     * Renders up to one page of listings plus navigation buttons. Navigation and the sort button
+     * are only added for the paged marketplace; a listing beyond the page size means a next page
+     * exists.
+     *
+     * @param sort The order the listings are in, or null if the view is not paged.
+     */
+    private static PageCache.Page buildPage(List<Document> listings, boolean isBlackMarket, ListingSort sort,
+                                            boolean hasPreviousPage) {
+        long renderedAt = System.nanoTime();
+        boolean hasNextPage = !isBlackMarket && listings.size() > ITEMS_PER_PAGE;
+        int shown = Math.min(listings.size(), ITEMS_PER_PAGE);
+        ListingCursor lastOnPage = shown > 0 && sort != null ? ListingCursor.of(sort, listings.get(shown - 1)) : null;
+
+        ItemStack[] contents = new ItemStack[54];
+        String[] slotListingIds = new String[54];
+        Set<String> listingIds = new HashSet<>();
+        Set<UUID> sellers = new HashSet<>();
+        for (int i = 0; i < shown; i++) {
+            Document listing = listings.get(i);
+            sellers.add(UUID.fromString(listing.getString("seller")));
+            contents[i] = renderListing(listing, isBlackMarket);
+            if (contents[i] != null) {
+                slotListingIds[i] = listing.get("_id").toString();
+                listingIds.add(slotListingIds[i]);
+            }
+        }
+
+        if (!isBlackMarket) {
+            if (hasPreviousPage) {
+                ItemStack prev = new ItemStack(Material.ARROW);
+                ItemMeta prevMeta = prev.getItemMeta();
+                prevMeta.setDisplayName("§ePrevious Page");
+                prev.setItemMeta(prevMeta);
+                contents[MarketplaceHolder.PREVIOUS_PAGE_SLOT] = prev;
+            }
+            if (hasNextPage) {
+                ItemStack next = new ItemStack(Material.ARROW);
+                ItemMeta nextMeta = next.getItemMeta();
+                nextMeta.setDisplayName("§eNext Page");
+                next.setItemMeta(nextMeta);
+                contents[MarketplaceHolder.NEXT_PAGE_SLOT] = next;
+            }
+        }
+        if (sort != null) {
+            ItemStack sortButton = new ItemStack(Material.HOPPER);
+            ItemMeta sortMeta = sortButton.getItemMeta();
+            sortMeta.setDisplayName("§eSort: " + sort.getDisplayName());
+            sortMeta.setLore(List.of("§7Click for: " + sort.next().getDisplayName()));
+            sortButton.setItemMeta(sortMeta);
+            contents[MarketplaceHolder.SORT_SLOT] = sortButton;
+        }
+        return new PageCache.Page(contents, lastOnPage, hasNextPage, listingIds, slotListingIds, sellers, renderedAt);
+    }
 
+    /**
+     * Builds the GUI icon for a listing: the listed item with price, seller and listing id
+     * appended to its lore.
+     *
+     * @return The icon, or null if the listing's item cannot be deserialized.
+     */
+    public static ItemStack renderListing(Document listing, boolean isBlackMarket) {
+        ItemStack item = ItemCache.get(listing.get("item"));
+        if (item == null) {
+            return null;
+        }
+        double price = listing.getDouble("price");
+        if (isBlackMarket) price *= 0.5; // 50% discount
+
+        ItemMeta meta = item.getItemMeta();
+        List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<>();
+        lore.add("§7Price: $" + String.format("%.2f", price));
+        lore.add("§7Seller: " + PlayerNameCache.get(UUID.fromString(listing.getString("seller"))));
+        lore.add("§7Listing ID: " + listing.get("_id").toString());
+        meta.setLore(lore);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    public void handlePurchase(Player buyer, String listingId) {
+        // The lease keeps other buyers out while this one confirms; losing buyers stop here
+        mongoManager.reserveListing(listingId, buyer.getUniqueId()).thenAccept(listing -> {
             if (listing == null) {
                 Bukkit.getScheduler().runTask(plugin, () -> {
-                    buyer.sendMessage("§cThis listing no longer exists!");
+                    buyer.sendMessage("§cThis listing is no longer available!");
                 });
                 return;
             }
 
-            ItemStack item = ItemUtils.deserializeItem(listing.getString("item"));
+            ItemStack item = ItemCache.get(listing.get("item"));
             if (item == null) {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     buyer.sendMessage("§cThis listing contains an invalid item and cannot be purchased!");
                     mongoManager.removeListing(listingId); // Clean up invalid listing
-                    refreshInventories();
                 });
                 return;
             }
@@ -168,6 +334,7 @@ public class MarketplaceGUI {
             Bukkit.getScheduler().runTask(plugin, () -> {
 
                 if (buyer.getUniqueId().equals(seller)) {
+                    mongoManager.releaseReservation(listingId, buyer.getUniqueId());
                     buyer.sendMessage("§cYou cannot purchase your own listing!");
                     return;
                 }
@@ -175,6 +342,7 @@ public class MarketplaceGUI {
                 new ConfirmationGUI(plugin, buyer, item, finalPrice, () -> {
                     plugin.getLogger().info("Executing purchase logic on thread: " + Thread.currentThread().getName());
                     if (!buyer.isOnline()) {
+                        mongoManager.releaseReservation(listingId, buyer.getUniqueId());
                         buyer.sendMessage("§cYou are no longer online!");
                         return;
                     }
@@ -184,52 +352,26 @@ public class MarketplaceGUI {
                     plugin.getLogger().info("Player " + buyer.getName() + " balance: $" + buyerBalance + ", Item price: $" + finalPrice);
 
                     if (!economy.has(buyer, finalPrice)) {
+                        mongoManager.releaseReservation(listingId, buyer.getUniqueId());
                         plugin.getLogger().info("Player " + buyer.getName() + " does not have enough money!");
                         buyer.sendMessage("§cYou don't have enough money! Need $" + String.format("%.2f", finalPrice) + ", but you have $" + String.format("%.2f", buyerBalance));
                         return;
                     }
 
-                    try {
-                        economy.withdrawPlayer(buyer, finalPrice);
-                        economy.depositPlayer(Bukkit.getOfflinePlayer(seller), finalPrice); // Seller receives what buyer pays
-                    } catch (Exception e) {
-                        economy.depositPlayer(buyer, finalPrice); // Rollback
-                        buyer.sendMessage("§cError processing payment!");
-                        plugin.getLogger().severe("Payment error: " + e.getMessage());
-                        return;
-                    }
-
-                    if (!buyer.getInventory().addItem(item).isEmpty()) {
-                        economy.depositPlayer(buyer, finalPrice);
-                        try {
-                            economy.withdrawPlayer(Bukkit.getOfflinePlayer(seller), finalPrice);
-                        } catch (Exception e) {
-                            plugin.getLogger().severe("Failed to rollback seller payment: " + e.getMessage());
+                    // Claim the listing before any money moves so concurrent buyers can't both get it
+                    mongoManager.claimListing(listingId, buyer.getUniqueId()).thenAccept(claimed -> Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (claimed == null) {
+                            buyer.sendMessage("§cThis listing has already been sold!");
+                            return;
                         }
-                        buyer.sendMessage("§cNot enough inventory space! Transaction cancelled.");
-                        return;
-                    }
-
-                    mongoManager.removeListing(listingId);
-                    mongoManager.addTransaction(buyer.getUniqueId(), seller, item, finalPrice, isBlackMarket);
-
-                    CompletableFuture.runAsync(() -> {
-                        DiscordWebhook.sendWebhook(plugin.getConfigManager().getDiscordWebhookUrl(),
-                                String.format("Purchase: %s bought %s for $%.2f from %s%s",
-                                        buyer.getName(),
-                                        item.getType().name(),
-                                        finalPrice,
-                                        Bukkit.getOfflinePlayer(seller).getName(),
-                                        isBlackMarket ? " (Black Market)" : ""));
+                        Metrics.mainThread("purchase").time(() -> completePurchase(buyer, claimed, item, seller, finalPrice, isBlackMarket));
+                    })).exceptionally(ex -> {
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            buyer.sendMessage("§cError processing purchase: " + ex.getMessage());
+                        });
+                        return null;
                     });
-
-                    double buyerBalanceAfter = economy.getBalance(buyer);
-                    double sellerBalanceAfter = economy.getBalance(Bukkit.getOfflinePlayer(seller));
-                    plugin.getLogger().info("Transaction completed: " + buyer.getName() + " paid $" + finalPrice + " (balance after: $" + buyerBalanceAfter + "), seller " + Bukkit.getOfflinePlayer(seller).getName() + " received $" + finalPrice + " (balance after: $" + sellerBalanceAfter + ")");
-
-                    buyer.sendMessage("§aPurchase successful!");
-                    refreshInventories();
-                });
+                }, () -> mongoManager.releaseReservation(listingId, buyer.getUniqueId()));
             });
         }).exceptionally(ex -> {
             Bukkit.getScheduler().runTask(plugin, () -> {
@@ -240,17 +382,112 @@ public class MarketplaceGUI {
         });
     }
 
+    /**
+     * Settles a claimed listing. Every check that can cancel the purchase runs on the tick, then
+     * the buyer pays; if the payment is refused the listing goes back on the market. The purchase
+     * is then made final in the purchase journal off the tick, and only once that is on disk is
+     * the seller paid and the item handed over. If the journal cannot take it, the buyer is
+     * refunded and the listing goes back on the market.
+     */
+    private void completePurchase(Player buyer, Document listing, ItemStack item, UUID seller, double finalPrice, boolean isBlackMarket) {
+        if (!buyer.isOnline() || !economy.has(buyer, finalPrice)) {
+            mongoManager.restoreListing(listing);
+            buyer.sendMessage("§cPurchase cancelled.");
+            return;
+        }
+        if (!hasRoomFor(buyer.getInventory(), item)) {
+            mongoManager.restoreListing(listing);
+            buyer.sendMessage("§cNot enough inventory space! Transaction cancelled.");
+            return;
+        }
+
+        EconomyResponse payment = economy.withdrawPlayer(buyer, finalPrice);
+        if (!payment.transactionSuccess()) {
+            mongoManager.restoreListing(listing);
+            buyer.sendMessage("§cPayment failed: " + payment.errorMessage);
+            return;
+        }
+
+        mongoManager.recordPurchase(listing, buyer.getUniqueId(), item, finalPrice, isBlackMarket).whenComplete((v, ex) ->
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (ex != null) {
+                        economy.depositPlayer(buyer, finalPrice);
+                        mongoManager.restoreListing(listing);
+                        buyer.sendMessage("§cError processing purchase! Your payment was refunded.");
+                        plugin.getLogger().severe("Failed to record purchase of listing " + listing.getObjectId("_id") + ": " + ex.getMessage());
+                        return;
+                    }
+                    Metrics.mainThread("purchase").time(() -> deliverPurchase(buyer, item, seller, finalPrice, isBlackMarket));
+                }));
+    }
+
+    // The purchase is final by now; nothing from here on puts the listing back
+    private void deliverPurchase(Player buyer, ItemStack item, UUID seller, double finalPrice, boolean isBlackMarket) {
+        economy.depositPlayer(Bukkit.getOfflinePlayer(seller), finalPrice); // Seller receives what buyer pays
+
+        Player online = Bukkit.getPlayer(buyer.getUniqueId());
+        if (online == null) {
+            // Logged off while the purchase was being recorded; handed over when they next join
+            mongoManager.returnItemsLater(buyer.getUniqueId(), List.of(item));
+        } else {
+            // Anything that no longer fits is dropped rather than lost
+            online.getInventory().addItem(item).values()
+                    .forEach(leftover -> online.getWorld().dropItemNaturally(online.getLocation(), leftover));
+        }
+
+        DiscordWebhook.sendWebhook(plugin.getConfigManager().getDiscordWebhookUrl(),
+                String.format("Purchase: %s bought %s for $%.2f from %s%s",
+                        buyer.getName(),
+                        item.getType().name(),
+                        finalPrice,
+                        PlayerNameCache.get(seller),
+                        isBlackMarket ? " (Black Market)" : ""));
+
+        double buyerBalanceAfter = economy.getBalance(buyer);
+        double sellerBalanceAfter = economy.getBalance(Bukkit.getOfflinePlayer(seller));
+        plugin.getLogger().info("Transaction completed: " + buyer.getName() + " paid $" + finalPrice + " (balance after: $" + buyerBalanceAfter + "), seller " + PlayerNameCache.get(seller) + " received $" + finalPrice + " (balance after: $" + sellerBalanceAfter + ")");
+
+        buyer.sendMessage("§aPurchase successful!");
+    }
+
+    private static boolean hasRoomFor(PlayerInventory inventory, ItemStack item) {
+        for (ItemStack slot : inventory.getStorageContents()) {
+            if (slot == null || slot.getType().isAir()
+                    || (slot.isSimilar(item) && slot.getAmount() + item.getAmount() <= slot.getMaxStackSize())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void handlePagination(Player player, boolean nextPage) {
         InventoryInfo info = openInventories.get(player.getUniqueId());
         if (info == null || info.isBlackMarket()) {
             return;
         }
 
-        int currentPage = info.getPage();
-        int newPage = nextPage ? currentPage + 1 : currentPage - 1;
-        if (newPage < 1) return;
+        List<ListingCursor> pageCursors = new ArrayList<>(info.getPageCursors());
+        if (nextPage) {
+            if (info.getLastOnPage() == null) return;
+            pageCursors.add(info.getLastOnPage());
+        } else {
+            if (pageCursors.isEmpty()) return;
+            pageCursors.removeLast();
+        }
 
-        openMarketplace(player, false, newPage);
+        openMarketplace(player, false, info.getSort(), pageCursors);
+    }
+
+    /**
+     * Switches the player's view to the next sort order, starting again from its first page.
+     */
+    public void handleSort(Player player) {
+        InventoryInfo info = openInventories.get(player.getUniqueId());
+        if (info == null || info.isBlackMarket()) {
+            return;
+        }
+
+        openMarketplace(player, false, info.getSort().next(), new ArrayList<>());
     }
 
     private int extractPageFromTitle(String title) {
@@ -262,18 +499,63 @@ public class MarketplaceGUI {
         }
     }
 
-    public void refreshInventories() {
-        for (Map.Entry<UUID, InventoryInfo> entry : new HashMap<>(openInventories).entrySet()) {
-            Player player = Bukkit.getPlayer(entry.getKey());
-            InventoryInfo info = entry.getValue();
-            if (player != null && player.getOpenInventory().getTopInventory().equals(info.getInventory())) {
-                openMarketplace(player, info.isBlackMarket(), info.getPage());
-            } else {
-                openInventories.remove(entry.getKey());
+    /**
+     * Re-renders only the viewers of the given pages. Safe to call from any thread.
+     */
+    private void refreshViewers(Set<PageCache.Key> affected) {
+        if (affected.isEmpty() || !plugin.isEnabled()) {
+            return;
+        }
+
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            for (PageCache.Key key : affected) {
+                Set<UUID> pageViewers = viewers.get(key);
+                if (pageViewers == null) {
+                    continue;
+                }
+                for (UUID uuid : new ArrayList<>(pageViewers)) {
+                    Player player = Bukkit.getPlayer(uuid);
+                    InventoryInfo info = openInventories.get(uuid);
+                    if (player == null || info == null || player.getOpenInventory().getTopInventory() != info.getInventory()) {
+                        handleClose(uuid);
+                        continue;
+                    }
+                    openMarketplace(player, info.isBlackMarket(), info.getSort(), info.getPageCursors());
+                }
             }
+        });
+    }
+
+    public void handleClose(Player player, Inventory inventory) {
+        InventoryInfo info = openInventories.get(player.getUniqueId());
+        if (info != null && info.getInventory() == inventory) {
+            handleClose(player.getUniqueId());
+        }
+    }
+
+    private void handleClose(UUID uuid) {
+        InventoryInfo info = openInventories.remove(uuid);
+        if (info != null) {
+            removeViewer(info.getPageKey(), uuid);
         }
     }
 
+    private void removeViewer(PageCache.Key key, UUID uuid) {
+        Set<UUID> pageViewers = viewers.get(key);
+        if (pageViewers == null) {
+            return;
+        }
+        pageViewers.remove(uuid);
+        if (pageViewers.isEmpty()) {
+            viewers.remove(key);
+            pageCache.remove(key);
+        }
+    }
+
+    public PageCache getPageCache() {
+        return pageCache;
+    }
+
     public Map<UUID, Inventory> getOpenInventories() {
         Map<UUID, Inventory> inventories = new HashMap<>();
         openInventories.forEach((uuid, info) -> inventories.put(uuid, info.getInventory()));
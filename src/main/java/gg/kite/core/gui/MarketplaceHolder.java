@@ -0,0 +1,47 @@
+package gg.kite.core.gui;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Marks an inventory as a marketplace view and remembers which listing each slot shows, so
+ * clicks are resolved with a type check and an array lookup instead of parsing lore.
+ */
+public class MarketplaceHolder implements InventoryHolder {
+    public static final int PREVIOUS_PAGE_SLOT = 45;
+    public static final int SORT_SLOT = 49;
+    public static final int NEXT_PAGE_SLOT = 53;
+
+    private Inventory inventory;
+    private volatile PageCache.Page page;
+
+    void setInventory(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    void setPage(PageCache.Page page) {
+        this.page = page;
+    }
+
+    @Override
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return The id of the listing shown in {@code slot}, or null if the slot holds none.
+     */
+    public String getListingId(int slot) {
+        PageCache.Page current = page;
+        if (current == null || slot < 0 || slot >= current.slotListingIds().length) {
+            return null;
+        }
+        return current.slotListingIds()[slot];
+    }
+
+    public boolean hasButton(int slot) {
+        PageCache.Page current = page;
+        return current != null && slot >= 0 && slot < current.contents().length && current.contents()[slot] != null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package gg.kite.core.gui;
+
+import gg.kite.core.database.ListingChange;
+import gg.kite.core.database.ListingCursor;
+import gg.kite.core.database.ListingSort;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Rendered marketplace pages shared by every viewer of the same page.
+ * <p>
+ * A page is identified by the view it belongs to and the cursor it starts after. Concurrent
+ * requests for a page that is still being rendered share the same future, and a page is only
+ * dropped when a listing that falls inside it is added or removed, or when nobody views it.
+ */
+public class PageCache {
+    private final Map<Key, CompletableFuture<Page>> pages = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public record Key(boolean isBlackMarket, ListingSort sort, ListingCursor after) {
+    }
+
+    /**
+     * @param contents    Inventory contents including navigation buttons. Shared between viewers, so
+     *                    never modify it; {@code Inventory#setContents} copies the stacks.
+     * @param lastOnPage  Cursor of the last listing shown, or null if the page is empty.
+     * @param hasNextPage Whether at least one more listing follows this page.
+     * @param listingIds     Ids of the listings shown on the page.
+     * @param slotListingIds Listing id shown in each slot, null for empty and button slots.
+     * @param sellers        Sellers whose names appear on the page.
+     * @param renderedAt     {@link System#nanoTime()} when rendering began, before any name was read.
+     */
+    public record Page(ItemStack[] contents, ListingCursor lastOnPage, boolean hasNextPage, Set<String> listingIds,
+                       String[] slotListingIds, Set<UUID> sellers, long renderedAt) {
+    }
+
+    public CompletableFuture<Page> get(Key key, Function<Key, CompletableFuture<Page>> renderer) {
+        CompletableFuture<Page> cached = pages.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        CompletableFuture<Page> page = pages.computeIfAbsent(key, renderer);
+        page.whenComplete((result, ex) -> {
+            if (ex != null) {
+                pages.remove(key, page);
+            }
+        });
+        return page;
+    }
+
+    /**
+     * Drops every page the changed listing belongs to, or would belong to once added.
+     *
+     * @return The keys of the pages that were dropped.
+     */
+    public Set<Key> invalidate(ListingChange change) {
+        String listingId = change.listingId();
+        Set<Key> dropped = new HashSet<>();
+        pages.forEach((key, future) -> {
+            boolean affected = !future.isDone() || future.isCompletedExceptionally()
+                    || covers(key, future.join(), change.cursor(key.sort()), listingId);
+            if (affected && pages.remove(key, future)) {
+                dropped.add(key);
+            }
+        });
+        return dropped;
+    }
+
+    /**
+     * Drops every page that may show an outdated name for one of the given sellers, i.e. was
+     * rendered before the name changed. Pages still rendering are kept: they read names after
+     * their sellers have resolved.
+     *
+     * @param changedAt {@link System#nanoTime()} of each seller's latest name change.
+     * @return The keys of the pages that were dropped.
+     */
+    public Set<Key> invalidateSellers(Map<UUID, Long> changedAt) {
+        Set<Key> dropped = new HashSet<>();
+        pages.forEach((key, future) -> {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return;
+            }
+            Page page = future.join();
+            boolean affected = false;
+            for (UUID seller : page.sellers()) {
+                Long changed = changedAt.get(seller);
+                if (changed != null && changed - page.renderedAt() > 0) {
+                    affected = true;
+                    break;
+                }
+            }
+            if (affected && pages.remove(key, future)) {
+                dropped.add(key);
+            }
+        });
+        return dropped;
+    }
+
+    /**
+     * Drops the black market page, e.g. after a rotation.
+     *
+     * @return The keys of the pages that were dropped.
+     */
+    public Set<Key> invalidateBlackMarket() {
+        Set<Key> dropped = new HashSet<>();
+        pages.keySet().removeIf(key -> key.isBlackMarket() && dropped.add(key));
+        return dropped;
+    }
+
+    public void remove(Key key) {
+        pages.remove(key);
+    }
+
+    public void clear() {
+        pages.clear();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static boolean covers(Key key, Page page, ListingCursor cursor, String listingId) {
+        // The black market is a sample rather than a range, so only its own listings matter
+        if (key.isBlackMarket()) {
+            return page.listingIds().contains(listingId);
+        }
+        if (key.after() != null && cursor.compareTo(key.after()) <= 0) {
+            return false;
+        }
+        // The last page is open-ended: anything after its start lands on it
+        return !page.hasNextPage() || cursor.compareTo(page.lastOnPage()) <= 0;
+    }
+}
\ No newline at end of file
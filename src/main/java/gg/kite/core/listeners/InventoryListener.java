@@ -1,18 +1,19 @@
 package gg.kite.core.listeners;
 
 import gg.kite.core.gui.MarketplaceGUI;
-import org.bson.types.ObjectId;
+import gg.kite.core.gui.MarketplaceHolder;
+import gg.kite.core.utils.Histogram;
+import gg.kite.core.utils.Metrics;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.entity.Player;
 
-import java.util.List;
-
 public class InventoryListener implements Listener {
+    // Resolved once so timing a click costs two nanoTime calls and no lookup or allocation
+    private static final Histogram CLICK_TIME = Metrics.mainThread("inventory_click");
     private final MarketplaceGUI marketplaceGUI;
 
     public InventoryListener(MarketplaceGUI marketplaceGUI) {
@@ -21,56 +22,61 @@ public class InventoryListener implements Listener {
 
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
-        Player player = (Player) event.getWhoClicked();
         Inventory inventory = event.getInventory();
 
         // Check if the clicked inventory is a marketplace or black market GUI
-        if (!marketplaceGUI.getOpenInventories().containsValue(inventory)) {
+        if (!(inventory.getHolder(false) instanceof MarketplaceHolder holder)) {
             return;
         }
 
         // Cancel the event to prevent item manipulation
         event.setCancelled(true);
+        long start = System.nanoTime();
+        try {
+            handleClick(event, holder);
+        } finally {
+            CLICK_TIME.observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    private void handleClick(InventoryClickEvent event, MarketplaceHolder holder) {
+        Inventory inventory = event.getInventory();
 
         // Ignore clicks outside the top inventory or invalid slots
-        if (event.getRawSlot() >= inventory.getSize() || event.getRawSlot() < 0) {
+        int slot = event.getRawSlot();
+        if (slot >= inventory.getSize() || slot < 0) {
             return;
         }
 
+        Player player = (Player) event.getWhoClicked();
+
         // Handle pagination
-        if (event.getRawSlot() == 45 && inventory.getItem(45) != null) {
+        if (slot == MarketplaceHolder.PREVIOUS_PAGE_SLOT && holder.hasButton(slot)) {
             marketplaceGUI.handlePagination(player, false); // Previous page
             return;
         }
-        if (event.getRawSlot() == 53 && inventory.getItem(53) != null) {
+        if (slot == MarketplaceHolder.NEXT_PAGE_SLOT && holder.hasButton(slot)) {
             marketplaceGUI.handlePagination(player, true); // Next page
             return;
         }
-
-        ItemStack clickedItem = event.getCurrentItem();
-        if (clickedItem == null || !clickedItem.hasItemMeta()) {
+        if (slot == MarketplaceHolder.SORT_SLOT && holder.hasButton(slot)) {
+            marketplaceGUI.handleSort(player);
             return;
         }
 
-        // Extract listing ID from item lore
-        ItemMeta meta = clickedItem.getItemMeta();
-        List<String> lore = meta.getLore();
-        if (lore == null || lore.size() < 3) {
+        String listingId = holder.getListingId(slot);
+        if (listingId == null) {
             return;
         }
 
-        String listingIdLine = lore.get(lore.size() - 1); // Last lore line: "Listing ID: <id>"
-        if (!listingIdLine.startsWith("§7Listing ID: ")) {
-            return;
-        }
+        marketplaceGUI.handlePurchase(player, listingId);
+    }
 
-        String listingId = listingIdLine.replace("§7Listing ID: ", "");
-        try {
-            new ObjectId(listingId); // Validate ObjectId
-        } catch (IllegalArgumentException e) {
-            return;
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getInventory().getHolder(false) instanceof MarketplaceHolder
+                && event.getPlayer() instanceof Player player) {
+            marketplaceGUI.handleClose(player, event.getInventory());
         }
-
-        marketplaceGUI.handlePurchase(player, listingId);
     }
 }
\ No newline at end of file
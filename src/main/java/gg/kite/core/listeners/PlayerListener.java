@@ -0,0 +1,45 @@
+package gg.kite.core.listeners;
+
+import gg.kite.core.Main;
+import gg.kite.core.database.MongoManager;
+import gg.kite.core.utils.PlayerNameCache;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.inventory.ItemStack;
+
+public class PlayerListener implements Listener {
+    private final Main plugin;
+    private final MongoManager mongoManager;
+
+    public PlayerListener(Main plugin, MongoManager mongoManager) {
+        this.plugin = plugin;
+        this.mongoManager = mongoManager;
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        if (PlayerNameCache.put(player.getUniqueId(), player.getName())) {
+            mongoManager.updatePlayerName(player.getUniqueId(), player.getName());
+        }
+
+        // Items returned while they were offline, e.g. from a listing that failed
+        mongoManager.takePendingItems(player.getUniqueId()).thenAccept(items -> {
+            if (items.isEmpty()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (!player.isOnline()) {
+                    mongoManager.returnItemsLater(player.getUniqueId(), items);
+                    return;
+                }
+                player.getInventory().addItem(items.toArray(ItemStack[]::new)).values()
+                        .forEach(leftover -> player.getWorld().dropItemNaturally(player.getLocation(), leftover));
+                player.sendMessage("§a" + items.size() + " item(s) were returned to you while you were away.");
+            });
+        });
+    }
+}
\ No newline at end of file
@@ -27,4 +27,40 @@ public class ConfigManager {
     public int getMaxListingsPerPlayer() {
         return config.getInt("marketplace.max-listings-per-player", 10);
     }
+
+    public int getBlackMarketSize() {
+        return Math.max(1, Math.min(45, config.getInt("black-market.size", 10)));
+    }
+
+    public int getBlackMarketRotationMinutes() {
+        return Math.max(1, config.getInt("black-market.rotation-minutes", 30));
+    }
+
+    public int getItemCacheSize() {
+        return config.getInt("cache.item-templates", 2048);
+    }
+
+    public boolean useVirtualThreads() {
+        return config.getBoolean("executor.virtual-threads", false);
+    }
+
+    public int getDatabaseReadThreads() {
+        return Math.max(1, config.getInt("executor.read-threads", 4));
+    }
+
+    public int getDatabaseWriteThreads() {
+        return Math.max(1, config.getInt("executor.write-threads", 2));
+    }
+
+    public boolean isMetricsHttpEnabled() {
+        return config.getBoolean("metrics.http-enabled", false);
+    }
+
+    public String getMetricsHost() {
+        return config.getString("metrics.host", "127.0.0.1");
+    }
+
+    public int getMetricsPort() {
+        return config.getInt("metrics.port", 9464);
+    }
 }
\ No newline at end of file
@@ -1,80 +1,51 @@
 package gg.kite.core.utils;
 
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.logging.Level;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Static entry point for Discord notifications, backed by one {@link WebhookDispatcher} and one
+ * shared {@link HttpClient} for the lifetime of the plugin.
+ */
 public class DiscordWebhook {
-    private static final List<WebhookMessage> webhookQueue = new ArrayList<>();
-    private static boolean isProcessing = false;
-    private static JavaPlugin plugin;
+    private static final int MAX_QUEUED_MESSAGES = 1000;
+    private static final long BATCH_WINDOW_MILLIS = 2000;
+
+    private static HttpClient httpClient;
+    private static WebhookDispatcher dispatcher;
 
     public static void initialize(JavaPlugin pluginInstance) {
-        plugin = pluginInstance;
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        dispatcher = new WebhookDispatcher(httpClient, pluginInstance.getLogger(), MAX_QUEUED_MESSAGES, BATCH_WINDOW_MILLIS);
     }
 
+    /**
+     * Queues a message for delivery. Safe to call from any thread; never blocks.
+     */
     public static void sendWebhook(String webhookUrl, String message) {
-        if (webhookUrl == null || webhookUrl.isEmpty()) {
+        if (webhookUrl == null || webhookUrl.isEmpty() || dispatcher == null) {
             return;
         }
-
-        webhookQueue.add(new WebhookMessage(webhookUrl, message));
-        if (!isProcessing) {
-            processQueue();
-        }
+        dispatcher.submit(webhookUrl, message);
     }
 
-    private static void processQueue() {
-        if (webhookQueue.isEmpty()) {
-            isProcessing = false;
-            return;
-        }
-
-        isProcessing = true;
-        WebhookMessage webhook = webhookQueue.removeFirst();
-
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPost httpPost = new HttpPost(webhook.webhookUrl);
-            httpPost.setHeader("Content-Type", "application/json");
-
-            String jsonPayload = String.format("{\"content\": \"%s\"}", escapeJson(webhook.message));
-            StringEntity entity = new StringEntity(jsonPayload);
-            httpPost.setEntity(entity);
-
-            httpClient.execute(httpPost);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to send Discord webhook: " + e.getMessage());
-        }
-
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                processQueue();
-            }
-        }.runTaskLater(plugin, 20L);
+    public static WebhookDispatcher getDispatcher() {
+        return dispatcher;
     }
 
-    private static String escapeJson(String input) {
-        return input.replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
-    private static class WebhookMessage {
-        final String webhookUrl;
-        final String message;
-
-        WebhookMessage(String webhookUrl, String message) {
-            this.webhookUrl = webhookUrl;
-            this.message = message;
+    public static void shutdown(long timeout, TimeUnit unit) {
+        if (dispatcher != null) {
+            dispatcher.shutdown(timeout, unit);
+            dispatcher = null;
+        }
+        if (httpClient != null) {
+            httpClient.shutdownNow();
+            httpClient = null;
         }
     }
 }
\ No newline at end of file
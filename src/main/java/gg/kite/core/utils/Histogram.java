@@ -0,0 +1,100 @@
+package gg.kite.core.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency histogram with fixed buckets, cheap enough to record from any thread on every call.
+ * Bucket bounds are in seconds, matching Prometheus conventions.
+ */
+public class Histogram {
+    static final double[] BOUNDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    // One extra bucket for everything above the last bound
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        double seconds = nanos / 1e9;
+        int bucket = 0;
+        while (bucket < BOUNDS.length && seconds > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public void time(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public <T> T time(Supplier<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+    }
+
+    /**
+     * @return The upper bound in milliseconds of the bucket holding quantile {@code q}, infinity
+     * if it lies above the last bucket, or 0 if nothing was recorded.
+     */
+    public double getQuantileBoundMillis(double q) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS[i] * 1000;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Non-cumulative counts per bucket; the last entry counts observations above every bound.
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package gg.kite.core.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor that counts queued, running and finished tasks so pool pressure can be observed.
+ * <p>
+ * In platform mode the pool size bounds concurrency. In virtual-thread mode every task gets its
+ * own virtual thread and a semaphore caps how many may run at once, so the bulkhead still holds
+ * and the blocked-on-permit tasks show up as queued.
+ */
+public class InstrumentedExecutor implements Executor {
+    private final String name;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private InstrumentedExecutor(String name, ExecutorService delegate, Semaphore permits, int maxConcurrency) {
+        this.name = name;
+        this.delegate = delegate;
+        this.permits = permits;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public static InstrumentedExecutor platform(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "marketplace-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return new InstrumentedExecutor(name, pool, null, threads);
+    }
+
+    public static InstrumentedExecutor virtual(String name, int maxConcurrency) {
+        ThreadFactory factory = Thread.ofVirtual().name("marketplace-" + name + "-", 0).factory();
+        return new InstrumentedExecutor(name, Executors.newThreadPerTaskExecutor(factory),
+                new Semaphore(maxConcurrency), maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task) {
+        if (permits != null) {
+            permits.acquireUninterruptibly();
+        }
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        try {
+            task.run();
+        } catch (RuntimeException | Error e) {
+            failed.incrementAndGet();
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting tasks and waits for the ones already submitted.
+     *
+     * @return true if every task finished before the timeout.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        delegate.shutdown();
+        try {
+            return delegate.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isVirtual() {
+        return permits != null;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
\ No newline at end of file
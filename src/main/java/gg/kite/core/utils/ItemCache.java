@@ -0,0 +1,87 @@
+package gg.kite.core.utils;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of deserialized item templates, keyed by the stored item data (a legacy
+ * Base64 string or compact BSON binary, both of which compare by content).
+ * <p>
+ * The same listing is rendered for every viewer of every page, so decoding it once and handing
+ * out clones avoids repeating the Base64 decode and object-stream read on each render.
+ */
+public class ItemCache {
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static Map<Object, ItemStack> templates = createTemplates(2048);
+
+    public static void initialize(int maxEntries) {
+        synchronized (ItemCache.class) {
+            templates = createTemplates(Math.max(1, maxEntries));
+        }
+    }
+
+    /**
+     * Returns a fresh copy of the item encoded by {@code data}, deserializing it only on a miss.
+     *
+     * @param data The serialized item, as stored on a listing or transaction.
+     * @return A clone the caller may modify, or null if the data is invalid.
+     */
+    public static ItemStack get(Object data) {
+        if (data == null || (data instanceof String string && string.isEmpty())) {
+            return null;
+        }
+
+        ItemStack template;
+        synchronized (ItemCache.class) {
+            template = templates.get(data);
+        }
+
+        if (template != null) {
+            hits.increment();
+            return template.clone();
+        }
+
+        misses.increment();
+        template = ItemUtils.deserializeItem(data);
+        if (template == null) {
+            return null;
+        }
+        synchronized (ItemCache.class) {
+            templates.put(data, template);
+        }
+        return template.clone();
+    }
+
+    public static void clear() {
+        synchronized (ItemCache.class) {
+            templates.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (ItemCache.class) {
+            return templates.size();
+        }
+    }
+
+    public static long getHitCount() {
+        return hits.sum();
+    }
+
+    public static long getMissCount() {
+        return misses.sum();
+    }
+
+    private static Map<Object, ItemStack> createTemplates(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, ItemStack> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -1,10 +1,12 @@
 package gg.kite.core.utils;
 
+import org.bson.types.Binary;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.logging.Level;
 
@@ -12,6 +14,12 @@ import org.bukkit.util.io.BukkitObjectInputStream;
 import org.bukkit.util.io.BukkitObjectOutputStream;
 
 public class ItemUtils {
+    /**
+     * Leading byte of the compact storage format. Bump it if the payload layout ever changes so
+     * old documents can still be told apart and read.
+     */
+    public static final byte FORMAT_VERSION = 1;
+
     private static JavaPlugin plugin;
 
     public static void initialize(JavaPlugin pluginInstance) {
@@ -19,12 +27,37 @@ public class ItemUtils {
     }
 
     /**
-     * Serializes an ItemStack to a Base64 string, preserving NBT data.
+     * Serializes an ItemStack to the compact storage format: a version byte followed by Paper's
+     * NBT byte encoding, wrapped as BSON binary.
+     *
+     * @param item The ItemStack to serialize.
+     * @return The stored form of the item, or null if it is empty or could not be serialized.
+     */
+    public static Binary serializeItem(ItemStack item) {
+        if (item == null || item.getType().isAir()) {
+            return null;
+        }
+
+        try {
+            byte[] payload = item.serializeAsBytes();
+            byte[] data = new byte[payload.length + 1];
+            data[0] = FORMAT_VERSION;
+            System.arraycopy(payload, 0, data, 1, payload.length);
+            return new Binary(data);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to serialize item: " + item.getType(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Serializes an ItemStack to a Base64 string, preserving NBT data. This is the format older
+     * versions stored; it is only kept for comparison and is never written anymore.
      *
      * @param item The ItemStack to serialize.
      * @return A Base64 string representing the ItemStack.
      */
-    public static String serializeItem(ItemStack item) {
+    public static String serializeLegacyItem(ItemStack item) {
         if (item == null || item.getType().isAir()) {
             return "";
         }
@@ -39,13 +72,50 @@ public class ItemUtils {
         }
     }
 
+    /**
+     * Deserializes a stored item in either format: a Base64 string written by older versions, or
+     * versioned compact bytes.
+     *
+     * @param data The stored item, as read from a document.
+     * @return The deserialized ItemStack, or null if the data is invalid.
+     */
+    public static ItemStack deserializeItem(Object data) {
+        if (data instanceof Binary binary) {
+            return deserializeBytes(binary.getData());
+        }
+        if (data instanceof byte[] bytes) {
+            return deserializeBytes(bytes);
+        }
+        if (data instanceof String string) {
+            return deserializeLegacyItem(string);
+        }
+        return null;
+    }
+
+    private static ItemStack deserializeBytes(byte[] data) {
+        if (data == null || data.length < 2) {
+            return null;
+        }
+        if (data[0] != FORMAT_VERSION) {
+            plugin.getLogger().severe("Unknown item format version: " + data[0]);
+            return null;
+        }
+
+        try {
+            return ItemStack.deserializeBytes(Arrays.copyOfRange(data, 1, data.length));
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to deserialize item (" + data.length + " bytes)", e);
+            return null;
+        }
+    }
+
     /**
      * Deserializes a Base64 string to an ItemStack, restoring NBT data.
      *
      * @param data The Base64 string to deserialize.
      * @return The deserialized ItemStack, or null if the data is invalid.
      */
-    public static ItemStack deserializeItem(String data) {
+    public static ItemStack deserializeLegacyItem(String data) {
         if (data == null || data.isEmpty()) {
             return null;
         }
@@ -0,0 +1,154 @@
+package gg.kite.core.utils;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metrics registry, rendered in the Prometheus text format by {@link #scrape()}.
+ * <p>
+ * Histograms are recorded directly. Counters and gauges are read from the component that already
+ * tracks the value (executor counters, cache statistics, queue depths) at scrape time, so
+ * registering them adds no work on the hot path. Each metric has at most one label.
+ */
+public class Metrics {
+    public static final String MAIN_THREAD_TIME = "marketplace_main_thread_seconds";
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    private record Family(String name, String help, Type type, String labelName, Map<String, Object> series) {
+    }
+
+    /**
+     * Returns the histogram for {@code name} and the given label value, creating it on first use.
+     */
+    public static Histogram histogram(String name, String help, String labelName, String labelValue) {
+        return (Histogram) family(name, help, Type.HISTOGRAM, labelName).series()
+                .computeIfAbsent(labelValue, value -> new Histogram());
+    }
+
+    public static Histogram histogram(String name, String help) {
+        return histogram(name, help, null, "");
+    }
+
+    /**
+     * @return The histogram of time spent on the server thread by {@code feature}.
+     */
+    public static Histogram mainThread(String feature) {
+        return histogram(MAIN_THREAD_TIME, "Time spent on the server thread, by feature.", "feature", feature);
+    }
+
+    /**
+     * Registers a monotonically increasing value that is read at scrape time.
+     */
+    public static void counter(String name, String help, String labelName, String labelValue, DoubleSupplier value) {
+        family(name, help, Type.COUNTER, labelName).series().put(labelValue, value);
+    }
+
+    public static void counter(String name, String help, DoubleSupplier value) {
+        counter(name, help, null, "", value);
+    }
+
+    /**
+     * Registers a value that may go up and down, read at scrape time.
+     */
+    public static void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier value) {
+        family(name, help, Type.GAUGE, labelName).series().put(labelValue, value);
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, help, null, "", value);
+    }
+
+    /**
+     * @return Every histogram of {@code name} by label value, in label order.
+     */
+    public static Map<String, Histogram> histograms(String name) {
+        Map<String, Histogram> result = new ConcurrentSkipListMap<>();
+        Family family = families.get(name);
+        if (family != null && family.type() == Type.HISTOGRAM) {
+            family.series().forEach((label, series) -> result.put(label, (Histogram) series));
+        }
+        return result;
+    }
+
+    public static void clear() {
+        families.clear();
+    }
+
+    public static String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().name().toLowerCase(Locale.ROOT)).append('\n');
+            family.series().forEach((label, series) -> {
+                if (series instanceof Histogram histogram) {
+                    writeHistogram(out, family, label, histogram);
+                } else {
+                    sample(out, family.name(), labels(family, label, null), ((DoubleSupplier) series).getAsDouble());
+                }
+            });
+        }
+        return out.toString();
+    }
+
+    private static Family family(String name, String help, Type type, String labelName) {
+        Family family = families.computeIfAbsent(name,
+                key -> new Family(key, help, type, labelName, new ConcurrentSkipListMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    private static void writeHistogram(StringBuilder out, Family family, String label, Histogram histogram) {
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < Histogram.BOUNDS.length; i++) {
+            cumulative += counts[i];
+            String bound = BigDecimal.valueOf(Histogram.BOUNDS[i]).stripTrailingZeros().toPlainString();
+            sample(out, family.name() + "_bucket", labels(family, label, bound), cumulative);
+        }
+        cumulative += counts[Histogram.BOUNDS.length];
+        sample(out, family.name() + "_bucket", labels(family, label, "+Inf"), cumulative);
+        sample(out, family.name() + "_sum", labels(family, label, null), histogram.getSumSeconds());
+        sample(out, family.name() + "_count", labels(family, label, null), cumulative);
+    }
+
+    private static String labels(Family family, String label, String le) {
+        StringBuilder labels = new StringBuilder();
+        if (family.labelName() != null) {
+            labels.append(family.labelName()).append("=\"").append(escape(label)).append('"');
+        }
+        if (le != null) {
+            if (!labels.isEmpty()) {
+                labels.append(',');
+            }
+            labels.append("le=\"").append(le).append('"');
+        }
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
\ No newline at end of file
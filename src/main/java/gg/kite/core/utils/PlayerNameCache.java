@@ -0,0 +1,131 @@
+package gg.kite.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * UUID-to-name cache for rendering sellers and trade partners.
+ * <p>
+ * Names are filled from players as they join and otherwise looked up in the background through
+ * the loader given to {@link #initialize(Function)}. {@link #get(UUID)} never blocks: it returns
+ * whatever is cached, even if stale, and schedules a refresh when the entry is missing or old.
+ * Listeners are told when a name becomes known or changes so views can re-render.
+ */
+public class PlayerNameCache {
+    public static final String UNKNOWN = "Unknown";
+    private static final long STALE_AFTER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final Map<UUID, Entry> names = new ConcurrentHashMap<>();
+    private static final Map<UUID, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private static final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+    private static Function<UUID, CompletableFuture<String>> loader;
+
+    private record Entry(String name, long resolvedAt) {
+    }
+
+    /**
+     * @param nameLoader Looks a name up asynchronously; completes with null if the player is unknown.
+     */
+    public static void initialize(Function<UUID, CompletableFuture<String>> nameLoader) {
+        loader = nameLoader;
+    }
+
+    public static void addListener(Consumer<UUID> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Forgets the loader, listeners and cached names. Call on disable so a reload does not keep
+     * the old plugin instance's views and database alive.
+     */
+    public static void clear() {
+        loader = null;
+        listeners.clear();
+        inFlight.clear();
+        names.clear();
+    }
+
+    /**
+     * @return The cached name, or {@link #UNKNOWN} while it is being looked up.
+     */
+    public static String get(UUID playerId) {
+        Entry entry = names.get(playerId);
+        if (entry == null || isStale(entry)) {
+            refresh(playerId);
+        }
+        return entry != null && entry.name() != null ? entry.name() : UNKNOWN;
+    }
+
+    /**
+     * Completes once every given player has a cached name (or is known to have none), so a
+     * caller can render a whole list with {@link #get(UUID)} afterwards. Stale entries are
+     * refreshed in the background without being waited for.
+     */
+    public static CompletableFuture<Void> resolve(Collection<UUID> playerIds) {
+        List<CompletableFuture<String>> missing = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            Entry entry = names.get(playerId);
+            if (entry == null) {
+                missing.add(refresh(playerId));
+            } else if (isStale(entry)) {
+                refresh(playerId);
+            }
+        }
+        return CompletableFuture.allOf(missing.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Records a name seen first-hand, e.g. on join.
+     *
+     * @return True if the name was not known before or has changed.
+     */
+    public static boolean put(UUID playerId, String name) {
+        Entry previous = names.put(playerId, new Entry(name, System.currentTimeMillis()));
+        boolean changed = !Objects.equals(previous != null ? previous.name() : null, name);
+        if (changed) {
+            listeners.forEach(listener -> listener.accept(playerId));
+        }
+        return changed;
+    }
+
+    public static int size() {
+        return names.size();
+    }
+
+    private static CompletableFuture<String> refresh(UUID playerId) {
+        if (loader == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(playerId, pending);
+        if (existing != null) {
+            return existing;
+        }
+
+        loader.apply(playerId).whenComplete((name, ex) -> {
+            inFlight.remove(playerId, pending);
+            if (ex == null) {
+                put(playerId, name);
+            }
+            // A failed lookup keeps whatever was cached and is retried on the next request
+            Entry entry = names.get(playerId);
+            pending.complete(entry != null ? entry.name() : null);
+        });
+        return pending;
+    }
+
+    private static boolean isStale(Entry entry) {
+        return System.currentTimeMillis() - entry.resolvedAt() > STALE_AFTER_MILLIS;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,260 @@
+package gg.kite.core.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Delivers webhook messages from a single background thread.
+ * <p>
+ * Producers only append to a bounded lock-free queue, so {@link #submit(String, String)} never
+ * blocks and never touches the network. The flusher waits a short window after the first message
+ * of a burst, then joins everything queued for the same URL into as few requests as Discord's
+ * 2000 character limit allows. Rate limits (HTTP 429) are honoured using {@code retry_after};
+ * other failures are retried with backoff and then dropped with a warning.
+ * <p>
+ * Nothing here is Discord-specific beyond the payload shape, so it can be pointed at a local HTTP
+ * server in tests.
+ */
+public class WebhookDispatcher {
+    public static final int MAX_CONTENT_LENGTH = 2000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Pattern RETRY_AFTER = Pattern.compile("\"retry_after\"\\s*:\\s*([0-9.]+)");
+
+    private final HttpClient httpClient;
+    private final Logger logger;
+    private final int capacity;
+    private final long batchWindowMillis;
+    private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private long reportedDrops;
+
+    private record Message(String url, String content) {
+    }
+
+    /**
+     * @param capacity          Messages that may wait in the queue; further ones are dropped.
+     * @param batchWindowMillis How long to let a burst accumulate before sending it.
+     */
+    public WebhookDispatcher(HttpClient httpClient, Logger logger, int capacity, long batchWindowMillis) {
+        this.httpClient = httpClient;
+        this.logger = logger;
+        this.capacity = capacity;
+        this.batchWindowMillis = batchWindowMillis;
+        this.flusher = Thread.ofPlatform().name("marketplace-webhook").daemon().unstarted(this::run);
+        flusher.start();
+    }
+
+    /**
+     * Queues a message without blocking.
+     *
+     * @return False if the dispatcher is shut down or the queue is full.
+     */
+    public boolean submit(String url, String content) {
+        if (!running) {
+            return false;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        queue.offer(new Message(url, content));
+        LockSupport.unpark(flusher);
+        return true;
+    }
+
+    /**
+     * Stops accepting messages and gives the flusher up to {@code timeout} to deliver the rest.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+            logger.warning("Discarded " + queued.get() + " webhook message(s) still queued at shutdown");
+        }
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+                continue;
+            }
+            // Let the rest of a burst arrive so it goes out as one request
+            if (running && !sleep(batchWindowMillis)) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            logger.warning("Dropped " + (drops - reportedDrops) + " webhook message(s) because the queue was full");
+            reportedDrops = drops;
+        }
+
+        Map<String, List<String>> byUrl = new LinkedHashMap<>();
+        Message message;
+        while ((message = queue.poll()) != null) {
+            queued.decrementAndGet();
+            byUrl.computeIfAbsent(message.url(), url -> new ArrayList<>()).add(message.content());
+        }
+
+        for (Map.Entry<String, List<String>> entry : byUrl.entrySet()) {
+            List<String> lines = entry.getValue();
+            for (String content : batch(lines)) {
+                if (post(entry.getKey(), content)) {
+                    sent.increment();
+                }
+            }
+        }
+    }
+
+    private static List<String> batch(List<String> lines) {
+        List<String> batches = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : lines) {
+            if (line.length() > MAX_CONTENT_LENGTH) {
+                line = line.substring(0, MAX_CONTENT_LENGTH);
+            }
+            if (!current.isEmpty() && current.length() + 1 + line.length() > MAX_CONTENT_LENGTH) {
+                batches.add(current.toString());
+                current.setLength(0);
+            }
+            if (!current.isEmpty()) {
+                current.append('\n');
+            }
+            current.append(line);
+        }
+        if (!current.isEmpty()) {
+            batches.add(current.toString());
+        }
+        return batches;
+    }
+
+    private boolean post(String url, String content) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"" + escapeJson(content) + "\"}"))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid Discord webhook URL: " + e.getMessage());
+            return false;
+        }
+
+        String failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long delayMillis = 1000L << (attempt - 1);
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                int status = response.statusCode();
+                if (status >= 200 && status < 300) {
+                    return true;
+                }
+                if (status == 429) {
+                    delayMillis = retryAfterMillis(response, delayMillis);
+                } else if (status < 500) {
+                    logger.warning("Discord webhook rejected message (HTTP " + status + "): " + response.body());
+                    return false;
+                }
+                failure = "HTTP " + status;
+            } catch (IOException e) {
+                failure = e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (attempt < MAX_ATTEMPTS && !sleep(delayMillis)) {
+                return false;
+            }
+        }
+        logger.warning("Failed to send Discord webhook after " + MAX_ATTEMPTS + " attempts: " + failure);
+        return false;
+    }
+
+    private static long retryAfterMillis(HttpResponse<String> response, long fallbackMillis) {
+        Matcher matcher = RETRY_AFTER.matcher(response.body());
+        if (matcher.find()) {
+            return (long) Math.ceil(Double.parseDouble(matcher.group(1)) * 1000);
+        }
+        return response.headers().firstValue("Retry-After")
+                .map(value -> (long) Math.ceil(Double.parseDouble(value) * 1000))
+                .orElse(fallbackMillis);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static String escapeJson(String input) {
+        StringBuilder builder = new StringBuilder(input.length() + 16);
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
\ No newline at end of file
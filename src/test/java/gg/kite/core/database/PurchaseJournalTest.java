@@ -0,0 +1,209 @@
+package gg.kite.core.database;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which purchases recovery finishes or undoes, and that reading stops cleanly at a
+ * damaged tail.
+ */
+class PurchaseJournalTest {
+    private static final Logger LOGGER = Logger.getLogger("PurchaseJournalTest");
+
+    @TempDir
+    Path dir;
+    private Path path;
+    private PurchaseJournal journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = dir.resolve("purchases.journal");
+        journal = new PurchaseJournal(path, LOGGER, Runnable::run, transactions -> {
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void completedClaimIsReplayedAndNotRestored() {
+        Document listing = listing();
+        Document transaction = transaction();
+
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(List.of(
+                claimed(listing),
+                completed(listing, transaction)));
+
+        assertEquals(List.of(transaction), recovery.transactions());
+        assertTrue(recovery.listings().isEmpty());
+    }
+
+    @Test
+    void cancelledClaimLeavesNothingToDo() {
+        Document listing = listing();
+
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(List.of(
+                claimed(listing),
+                cancelled(listing)));
+
+        assertTrue(recovery.isEmpty());
+    }
+
+    @Test
+    void unresolvedClaimIsRestored() {
+        Document listing = listing();
+
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(List.of(claimed(listing)));
+
+        assertEquals(List.of(listing), recovery.listings());
+        assertTrue(recovery.transactions().isEmpty());
+    }
+
+    @Test
+    void appliedCompletionIsNotReplayed() {
+        Document applied = listing();
+        Document pending = listing();
+        Document pendingTransaction = transaction();
+
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(List.of(
+                claimed(applied),
+                completed(applied, transaction()),
+                claimed(pending),
+                completed(pending, pendingTransaction),
+                new Document("type", "applied").append("listingIds", List.of(id(applied)))));
+
+        assertEquals(List.of(pendingTransaction), recovery.transactions());
+        assertTrue(recovery.listings().isEmpty());
+    }
+
+    @Test
+    void cancelledCompletionIsDropped() {
+        Document listing = listing();
+
+        PurchaseJournal.Recovery recovery = PurchaseJournal.Recovery.of(List.of(
+                claimed(listing),
+                completed(listing, transaction()),
+                cancelled(listing)));
+
+        assertTrue(recovery.isEmpty());
+    }
+
+    @Test
+    void retriesAFailedApplyUntilItSucceeds() throws IOException, InterruptedException {
+        journal.close(5, TimeUnit.SECONDS);
+        AtomicInteger attempts = new AtomicInteger();
+        journal = new PurchaseJournal(path, LOGGER, Runnable::run, transactions -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("MongoDB is unavailable");
+            }
+        });
+
+        Document listing = listing();
+        journal.claimed(listing).join();
+        journal.completed(id(listing), transaction()).join();
+
+        // Left unapplied until the retry after the first backoff writes the applied record
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!PurchaseJournal.Recovery.of(PurchaseJournal.read(path, LOGGER)).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(PurchaseJournal.Recovery.of(PurchaseJournal.read(path, LOGGER)).isEmpty());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Document first = listing();
+        Document second = listing();
+        journal.claimed(first).join();
+        journal.claimed(second).join();
+        journal.close(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(first, second), PurchaseJournal.Recovery.of(PurchaseJournal.read(path, LOGGER)).listings());
+    }
+
+    @Test
+    void ignoresATornTail() throws IOException {
+        Document listing = listing();
+        journal.claimed(listing).join();
+        journal.close(5, TimeUnit.SECONDS);
+
+        // A frame header promising more bytes than made it to disk
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[3]).flip());
+        }
+
+        List<Document> records = PurchaseJournal.read(path, LOGGER);
+        assertEquals(1, records.size());
+        assertEquals(List.of(listing), PurchaseJournal.Recovery.of(records).listings());
+    }
+
+    @Test
+    void stopsAtARecordWithABadChecksum() throws IOException {
+        Document intact = listing();
+        journal.claimed(intact).join();
+        long intactEnd = Files.size(path);
+        journal.claimed(listing()).join();
+        journal.close(5, TimeUnit.SECONDS);
+
+        // Flip a byte inside the second record's payload, past its length and checksum
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer original = ByteBuffer.allocate(1);
+            channel.read(original, intactEnd + 12);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (original.get(0) ^ 0xFF)}), intactEnd + 12);
+        }
+
+        List<Document> records = PurchaseJournal.read(path, LOGGER);
+        assertEquals(1, records.size());
+        assertEquals(List.of(intact), PurchaseJournal.Recovery.of(records).listings());
+    }
+
+    private static Document listing() {
+        return new Document("_id", new ObjectId())
+                .append("seller", "00000000-0000-0000-0000-000000000001")
+                .append("price", 10.0)
+                .append("expiresAt", System.currentTimeMillis() + 60_000);
+    }
+
+    private static Document transaction() {
+        return new Document("_id", new ObjectId())
+                .append("buyer", "00000000-0000-0000-0000-000000000002")
+                .append("price", 10.0);
+    }
+
+    private static String id(Document listing) {
+        return listing.getObjectId("_id").toString();
+    }
+
+    private static Document claimed(Document listing) {
+        return new Document("type", "claimed").append("listingId", id(listing)).append("listing", listing);
+    }
+
+    private static Document completed(Document listing, Document transaction) {
+        return new Document("type", "completed").append("listingId", id(listing)).append("transaction", transaction);
+    }
+
+    private static Document cancelled(Document listing) {
+        return new Document("type", "cancelled").append("listingId", id(listing));
+    }
+}
\ No newline at end of file
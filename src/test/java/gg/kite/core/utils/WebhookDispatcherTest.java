@@ -0,0 +1,139 @@
+package gg.kite.core.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the dispatcher against a local HTTP server standing in for Discord.
+ */
+class WebhookDispatcherTest {
+    private static final long BATCH_WINDOW_MILLIS = 200;
+
+    private record Request(String body, long receivedAt) {
+    }
+
+    private record Response(int status, String body) {
+    }
+
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    // Scripted replies, taken in order; a plain 204 once they run out
+    private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private HttpServer server;
+    private WebhookDispatcher dispatcher;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/webhook", exchange -> {
+            requests.add(new Request(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8),
+                    System.nanoTime()));
+            Response response = responses.poll();
+            if (response == null) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(response.status(), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+        dispatcher = new WebhookDispatcher(HttpClient.newHttpClient(), Logger.getLogger("WebhookDispatcherTest"),
+                100, BATCH_WINDOW_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+        server.stop(0);
+    }
+
+    @Test
+    void joinsABurstIntoOneRequest() throws InterruptedException {
+        assertTrue(dispatcher.submit(url, "first"));
+        assertTrue(dispatcher.submit(url, "second"));
+        assertTrue(dispatcher.submit(url, "third"));
+
+        assertEquals("{\"content\":\"first\\nsecond\\nthird\"}", nextRequest().body());
+        assertNoMoreRequests();
+        awaitSent(1);
+    }
+
+    @Test
+    void splitsBatchesAtTheContentLimit() throws InterruptedException {
+        String line = "x".repeat(900);
+        dispatcher.submit(url, line);
+        dispatcher.submit(url, line);
+        dispatcher.submit(url, line);
+
+        assertEquals("{\"content\":\"" + line + "\\n" + line + "\"}", nextRequest().body());
+        assertEquals("{\"content\":\"" + line + "\"}", nextRequest().body());
+        assertNoMoreRequests();
+        awaitSent(2);
+    }
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() throws InterruptedException {
+        assertEquals("say \\\"hi\\\"", WebhookDispatcher.escapeJson("say \"hi\""));
+        assertEquals("C:\\\\path", WebhookDispatcher.escapeJson("C:\\path"));
+        assertEquals("a\\nb\\r\\tc\\u0001", WebhookDispatcher.escapeJson("a\nb\r\tc\u0001"));
+
+        dispatcher.submit(url, "\"quoted\" \\ back\nslash");
+        assertEquals("{\"content\":\"\\\"quoted\\\" \\\\ back\\nslash\"}", nextRequest().body());
+    }
+
+    @Test
+    void retriesAfterTheRateLimitDelay() throws InterruptedException {
+        responses.add(new Response(429, "{\"message\":\"You are being rate limited.\",\"retry_after\":0.3,\"global\":false}"));
+
+        dispatcher.submit(url, "limited");
+
+        Request limited = nextRequest();
+        Request retried = nextRequest();
+        assertEquals(limited.body(), retried.body());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(retried.receivedAt() - limited.receivedAt()) >= 300,
+                "retried before retry_after elapsed");
+        assertNoMoreRequests();
+        awaitSent(1);
+    }
+
+    private Request nextRequest() throws InterruptedException {
+        Request request = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request, "no request reached the server");
+        return request;
+    }
+
+    private void assertNoMoreRequests() throws InterruptedException {
+        assertNull(requests.poll(BATCH_WINDOW_MILLIS * 2, TimeUnit.MILLISECONDS));
+    }
+
+    private void awaitSent(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getSentCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, dispatcher.getSentCount());
+    }
+}
\ No newline at end of file